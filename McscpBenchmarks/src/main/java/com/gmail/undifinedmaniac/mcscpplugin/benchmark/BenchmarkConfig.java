@@ -0,0 +1,169 @@
+package com.gmail.undifinedmaniac.mcscpplugin.benchmark;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpHistory;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpOutgoingQueue;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Server settings for benchmarks. The server listens on a free loopback port
+ * and is driven from the benchmark thread (no network thread)
+ */
+public class BenchmarkConfig implements IMcscpServerConfig {
+
+    private int mPort;
+
+    public BenchmarkConfig() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            mPort = socket.getLocalPort();
+        }
+    }
+
+    //Listen server
+    @Override
+    public String getAddress() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public int getPort() {
+        return mPort;
+    }
+
+    //Threading
+    @Override
+    public boolean useNetworkThread() {
+        return false;
+    }
+
+    @Override
+    public long getEventBatchInterval() {
+        return 0;
+    }
+
+    //Protocol
+    @Override
+    public int getMaxLineLength() {
+        return 8192;
+    }
+
+    //Commands
+    @Override
+    public long getCommandOutputWindow() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxCommandsInFlight() {
+        return 32;
+    }
+
+    @Override
+    public long getTickBudget() {
+        return 5000000;
+    }
+
+    //Rate limits
+    @Override
+    public float getCommandRate(McscpCommand.CommandType type) {
+        return 0;
+    }
+
+    @Override
+    public int getCommandBurst(McscpCommand.CommandType type) {
+        return 1;
+    }
+
+    @Override
+    public int getMaxRateLimitViolations() {
+        return 0;
+    }
+
+    //Slow clients
+    @Override
+    public long getMaxQueueBytes() {
+        return 1048576;
+    }
+
+    @Override
+    public Set<McscpOutgoingQueue.Policy> getSlowClientPolicies() {
+        return EnumSet.allOf(McscpOutgoingQueue.Policy.class);
+    }
+
+    @Override
+    public long getSlowClientGracePeriod() {
+        return 30000;
+    }
+
+    @Override
+    public int getLogBufferSize() {
+        return 4096;
+    }
+
+    @Override
+    public int getLogBacklogLines() {
+        return 1000;
+    }
+
+    @Override
+    public int getLogBacklogBytes() {
+        return 131072;
+    }
+
+    @Override
+    public boolean sendLogBacklogOnFlag() {
+        return false;
+    }
+
+    @Override
+    public boolean recordHistory() {
+        return false;
+    }
+
+    @Override
+    public String getHistoryFile() {
+        return null;
+    }
+
+    @Override
+    public int getHistoryLength(McscpHistory.Resolution resolution) {
+        return 0;
+    }
+
+    @Override
+    public boolean allowCompression() {
+        return true;
+    }
+
+    @Override
+    public int getCompressionLevel() {
+        return 6;
+    }
+
+    @Override
+    public int getMinCompressedBatch() {
+        return 256;
+    }
+
+    @Override
+    public int getPlayerPollInterval(McscpPlayerTable.Key key) {
+        return 600;
+    }
+
+    @Override
+    public float getServerChangeThreshold(McscpServerTable.Key key) {
+        return 0;
+    }
+
+    @Override
+    public float getPlayerChangeThreshold(McscpPlayerTable.Key key) {
+        return 0;
+    }
+}
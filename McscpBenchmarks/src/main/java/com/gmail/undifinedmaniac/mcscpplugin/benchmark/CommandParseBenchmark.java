@@ -0,0 +1,34 @@
+package com.gmail.undifinedmaniac.mcscpplugin.benchmark;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a single client line for every command type
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParseBenchmark {
+
+    @Param({
+            "[CMD]:[CONTENT:whitelist add Notch]",
+            "[MSG]:[SENDER:Admin]:[CONTENT:Server restart in 5 minutes]",
+            "[BROADCAST]:[CONTENT:&aWelcome to the server!]",
+            "[STOP]",
+            "[SETFLAG]:[NAME:SendServerLog]:[VALUE:TRUE]",
+            "[PING]",
+            "[NOTACOMMAND]:[CONTENT:something]"
+    })
+    public String line;
+
+    @Benchmark
+    public McscpCommand.CommandType parse() {
+        return new McscpCommand(null, line).getType();
+    }
+}
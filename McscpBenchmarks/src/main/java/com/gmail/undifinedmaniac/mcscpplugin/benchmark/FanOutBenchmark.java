@@ -0,0 +1,81 @@
+package com.gmail.undifinedmaniac.mcscpplugin.benchmark;
+
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpProtocol;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpTcpServer;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpTableValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivering one event to N connected loopback clients, including the writes
+ * done by processEvents()
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+
+    private static final String LOG_LINE = "Player joined the game at world (-1024.5, 64.0, 2048.5)";
+    private static final String CHAT_LINE = "has anyone seen my diamond pickaxe?";
+
+    @Param({"1", "10", "40"})
+    public int clients;
+
+    @Param({"V1", "V2"})
+    public McscpProtocol protocol;
+
+    private McscpTcpServer mServer;
+    private LoopbackClient[] mClients;
+    private String mUuid = UUID.randomUUID().toString();
+    private float mValue = 0;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        BenchmarkConfig config = new BenchmarkConfig();
+        mServer = new McscpTcpServer(new StubDataFetcher(), config);
+        mServer.start();
+
+        CountDownLatch ready = new CountDownLatch(clients);
+        mClients = new LoopbackClient[clients];
+        for (int i = 0; i < clients; i++)
+            mClients[i] = new LoopbackClient(config.getAddress(), config.getPort(), protocol, ready);
+
+        //Drive the server until every client is through the handshake
+        while (!ready.await(1, TimeUnit.MILLISECONDS))
+            mServer.processEvents();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (LoopbackClient client : mClients)
+            client.close();
+        mServer.stop();
+    }
+
+    @Benchmark
+    public void logEvent() {
+        mServer.logEvent(System.currentTimeMillis(), "INFO", LOG_LINE);
+        mServer.processEvents();
+    }
+
+    @Benchmark
+    public void chatEvent() {
+        mServer.chatEvent(mUuid, CHAT_LINE);
+        mServer.processEvents();
+    }
+
+    @Benchmark
+    public void playerTableUpdate() {
+        mValue = (mValue + 0.5f) % 20;
+        mServer.playerTableUpdate(mUuid, McscpPlayerTable.Key.Health, McscpTableValue.ofDecimal(mValue));
+        mServer.processEvents();
+    }
+}
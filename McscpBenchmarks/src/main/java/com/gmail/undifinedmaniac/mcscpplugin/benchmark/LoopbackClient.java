@@ -0,0 +1,99 @@
+package com.gmail.undifinedmaniac.mcscpplugin.benchmark;
+
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpProtocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * An MCSCP client on a loopback socket. It completes the handshake, enables
+ * every event flag and then reads and discards everything the server sends
+ */
+public class LoopbackClient implements Runnable {
+
+    private static final String[] FLAGS = {
+            "ReportPlayerJoin", "ReportPlayerLeave", "CmdResponse",
+            "ReportChat", "ReportPlayerDeath", "SendServerLog"
+    };
+
+    private static final byte[] PONG = "[PONG]".getBytes(StandardCharsets.UTF_8);
+
+    private Socket mSocket;
+    private McscpProtocol mProtocol;
+    private CountDownLatch mReady;
+    private volatile long mBytesRead = 0;
+
+    public LoopbackClient(String address, int port, McscpProtocol protocol, CountDownLatch ready) throws IOException {
+        mSocket = new Socket(address, port);
+        mProtocol = protocol;
+        mReady = ready;
+
+        Thread thread = new Thread(this, "MCSCP Benchmark Client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            InputStream input = mSocket.getInputStream();
+            OutputStream output = mSocket.getOutputStream();
+
+            //The handshake is always text, read it a byte at a time so nothing
+            //after it gets buffered
+            skipLine(input);
+            send(output, "[HANDSHAKE]:[PROTOCOL:" + mProtocol.getName() + "]");
+            skipLine(input);
+            send(output, "[HANDSHAKE]:[READY]");
+            skipLine(input);
+
+            for (String flag : FLAGS)
+                send(output, "[SETFLAG]:[NAME:" + flag + "]:[VALUE:TRUE]");
+
+            //The flags are set once the server answers the ping, the reply text
+            //shows up in the raw bytes with either protocol
+            send(output, "[PING]");
+            byte[] buffer = new byte[65536];
+            int matched = 0;
+            int count;
+            while (matched < PONG.length && (count = input.read(buffer)) != -1) {
+                for (int i = 0; i < count && matched < PONG.length; i++)
+                    matched = buffer[i] == PONG[matched] ? matched + 1 : (buffer[i] == PONG[0] ? 1 : 0);
+            }
+
+            mReady.countDown();
+
+            while ((count = input.read(buffer)) != -1)
+                mBytesRead += count;
+        } catch (IOException error) {
+            //The socket is closed when the benchmark ends
+        }
+    }
+
+    /**
+     * Gets the number of bytes read after the handshake
+     * @return the number of bytes
+     */
+    public long getBytesRead() {
+        return mBytesRead;
+    }
+
+    public void close() throws IOException {
+        mSocket.close();
+    }
+
+    private void skipLine(InputStream input) throws IOException {
+        int value;
+        while ((value = input.read()) != -1 && value != '\n')
+            ;
+    }
+
+    private void send(OutputStream output, String line) throws IOException {
+        output.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+}
@@ -0,0 +1,191 @@
+package com.gmail.undifinedmaniac.mcscpplugin.benchmark;
+
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpCommandOutput;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpPlayerData;
+
+import java.util.logging.Level;
+
+/**
+ * A data fetcher that serves made up values without a Minecraft server. Calling
+ * advance() changes the values that change on a real server every few seconds
+ */
+public class StubDataFetcher implements IMcscpDataFetcher {
+
+    private int mStep = 0;
+
+    /**
+     * Changes the frequently changing values (TPS, RAM, health, hunger)
+     */
+    public void advance() {
+        mStep++;
+    }
+
+    //Server data
+    @Override
+    public int getMaxPlayers() {
+        return 500;
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return 200;
+    }
+
+    @Override
+    public String getMotd() {
+        return "A Minecraft Server";
+    }
+
+    //Performance data
+    @Override
+    public float getTps() {
+        return 19.0f + (mStep % 10) / 10.0f;
+    }
+
+    @Override
+    public float getTps1m() {
+        return 19.5f;
+    }
+
+    @Override
+    public float getTps5m() {
+        return 19.7f;
+    }
+
+    @Override
+    public float getTps15m() {
+        return 19.8f;
+    }
+
+    @Override
+    public float getTickIntervalMean() {
+        return 50.0f + (mStep % 10) / 10.0f;
+    }
+
+    @Override
+    public float getTickIntervalP50() {
+        return 50.0f;
+    }
+
+    @Override
+    public float getTickIntervalP95() {
+        return 52.5f;
+    }
+
+    @Override
+    public float getTickIntervalP99() {
+        return 55.0f;
+    }
+
+    @Override
+    public float getTickIntervalMax() {
+        return 80.0f + mStep % 10;
+    }
+
+    @Override
+    public float getMaxRam() {
+        return 8192.0f;
+    }
+
+    @Override
+    public float getTotalRam() {
+        return 4096.0f;
+    }
+
+    @Override
+    public float getFreeRam() {
+        return 1024.0f + mStep % 100;
+    }
+
+    @Override
+    public float getUsedRam() {
+        return 3072.0f - mStep % 100;
+    }
+
+    //Player data
+    @Override
+    public IMcscpPlayerData getPlayerData(String uuid) {
+        return new StubPlayerData(uuid);
+    }
+
+    //Commands
+    @Override
+    public void sendConsoleCmd(String cmd, IMcscpCommandOutput output) {
+        output.sendMessage("There are 200 of a max 500 players online");
+    }
+
+    @Override
+    public void sendChatMessage(String username, String message) {
+
+    }
+
+    @Override
+    public void broadcastMessage(String message) {
+
+    }
+
+    @Override
+    public void stop() {
+
+    }
+
+    @Override
+    public void logMessage(Level level, String message) {
+
+    }
+
+    private class StubPlayerData implements IMcscpPlayerData {
+
+        private String mUuid;
+
+        StubPlayerData(String uuid) {
+            mUuid = uuid;
+        }
+
+        @Override
+        public String getUniqueId() {
+            return mUuid;
+        }
+
+        @Override
+        public String getName() {
+            return "Player";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Player";
+        }
+
+        @Override
+        public String getIpAddress() {
+            return "/127.0.0.1:50000";
+        }
+
+        @Override
+        public float getMaxHealth() {
+            return 20.0f;
+        }
+
+        @Override
+        public float getHealth() {
+            return mStep % 20;
+        }
+
+        @Override
+        public float getHunger() {
+            return (mStep / 2) % 20;
+        }
+
+        @Override
+        public float getLevel() {
+            return 30.0f;
+        }
+
+        @Override
+        public String getWorld() {
+            return "world";
+        }
+    }
+}
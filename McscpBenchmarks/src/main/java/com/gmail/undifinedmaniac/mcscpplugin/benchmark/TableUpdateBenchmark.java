@@ -0,0 +1,99 @@
+package com.gmail.undifinedmaniac.mcscpplugin.benchmark;
+
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpProtocol;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpTcpServer;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshing and diffing the server table and N player tables, either every key
+ * or only the keys marked dirty. Each invocation also drains the resulting
+ * updates through processEvents() to one connected client (keys nobody is
+ * subscribed to are not read at all)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TableUpdateBenchmark {
+
+    @Param({"1", "50", "200"})
+    public int players;
+
+    @Param({"true", "false"})
+    public boolean changing;
+
+    private StubDataFetcher mFetcher;
+    private McscpTcpServer mServer;
+    private LoopbackClient mClient;
+    private McscpServerTable mServerTable;
+    private List<McscpPlayerTable> mPlayerTables;
+    private long mTick = 0;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        BenchmarkConfig config = new BenchmarkConfig();
+        mFetcher = new StubDataFetcher();
+        mServer = new McscpTcpServer(mFetcher, config);
+        mServer.start();
+
+        CountDownLatch ready = new CountDownLatch(1);
+        mClient = new LoopbackClient(config.getAddress(), config.getPort(), McscpProtocol.V1, ready);
+        while (!ready.await(1, TimeUnit.MILLISECONDS))
+            mServer.processEvents();
+
+        mServerTable = new McscpServerTable(mFetcher, mServer);
+        mPlayerTables = new ArrayList<>();
+        for (int i = 0; i < players; i++)
+            mPlayerTables.add(new McscpPlayerTable(UUID.randomUUID().toString(), mFetcher, mServer));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mClient.close();
+        mServer.stop();
+    }
+
+    @Benchmark
+    public void serverTable() {
+        if (changing)
+            mFetcher.advance();
+
+        mServerTable.updateKeys();
+        mServer.processEvents();
+    }
+
+    @Benchmark
+    public void playerTables() {
+        if (changing)
+            mFetcher.advance();
+
+        for (McscpPlayerTable table : mPlayerTables)
+            table.updateKeys();
+        mServer.processEvents();
+    }
+
+    @Benchmark
+    public void dirtyPlayerTables() {
+        if (changing)
+            mFetcher.advance();
+
+        //One event driven key per player, the safety polls are not due
+        mTick++;
+        for (McscpPlayerTable table : mPlayerTables) {
+            table.markDirty(McscpPlayerTable.Key.Health);
+            table.updateDirtyKeys(mTick);
+        }
+        mServer.processEvents();
+    }
+}
@@ -0,0 +1,34 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A complete server side handshake with a v1 or v2 client
+ * (in the network package since McscpHandshake is package-private to construct)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandshakeBenchmark {
+
+    @Param({"V1", "V2"})
+    public McscpProtocol protocol;
+
+    @Benchmark
+    public boolean handshake() {
+        McscpHandshake handshake = new McscpHandshake(false);
+
+        handshake.start();
+        handshake.processNewData("[HANDSHAKE]:[PROTOCOL:" + protocol.getName() + "]");
+        handshake.getNextMessage();
+        handshake.processNewData("[HANDSHAKE]:[READY]");
+        handshake.getNextMessage();
+
+        return handshake.complete();
+    }
+}
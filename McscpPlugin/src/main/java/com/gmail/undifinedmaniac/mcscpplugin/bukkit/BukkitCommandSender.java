@@ -1,5 +1,6 @@
 package com.gmail.undifinedmaniac.mcscpplugin.bukkit;
 
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpCommandOutput;
 import org.bukkit.Bukkit;
 import org.bukkit.Server;
 import org.bukkit.command.ConsoleCommandSender;
@@ -9,25 +10,19 @@ import org.bukkit.permissions.PermissionAttachment;
 import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.plugin.Plugin;
 
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.Set;
 
 /**
- * Wrapper for ConsoleCommandSender that allows McscpCommandProcessor to
- * receive console command feedback
+ * Wrapper for ConsoleCommandSender that passes the feedback of one console
+ * command on to the client that sent it
  */
 class BukkitCommandSender implements CommandSender {
 
     private static ConsoleCommandSender mSender = Bukkit.getConsoleSender();
-    private Queue<String> mQueue = new LinkedList<>();
+    private IMcscpCommandOutput mOutput;
 
-    public LinkedList<String> retrieveMessages() {
-        LinkedList<String> messages = new LinkedList<>();
-        while (mQueue.peek() != null) {
-            messages.add(mQueue.poll());
-        }
-        return messages;
+    BukkitCommandSender(IMcscpCommandOutput output) {
+        mOutput = output;
     }
 
     @Override
@@ -39,7 +34,7 @@ class BukkitCommandSender implements CommandSender {
 
     @Override
     public void sendMessage(String s) {
-        mQueue.add(s);
+        mOutput.sendMessage(s);
         mSender.sendMessage(s);
     }
 
@@ -1,5 +1,6 @@
 package com.gmail.undifinedmaniac.mcscpplugin.bukkit;
 
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpCommandOutput;
 import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
 import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpPlayerData;
 import org.bukkit.Bukkit;
@@ -8,7 +9,6 @@ import org.bukkit.Server;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.LinkedList;
 import java.util.UUID;
 import java.util.logging.Level;
 
@@ -18,7 +18,6 @@ public class BukkitDataFetcher implements IMcscpDataFetcher {
 
     private McscpPlugin mPlugin;
     private Server mServer = Bukkit.getServer();
-    private static BukkitCommandSender mSender = new BukkitCommandSender();
 
     BukkitDataFetcher(McscpPlugin plugin) {
         mPlugin = plugin;
@@ -44,6 +43,30 @@ public class BukkitDataFetcher implements IMcscpDataFetcher {
     @Override
     public float getTps() { return roundToTenths(BukkitTpsCalculator.getTps()); }
 
+    @Override
+    public float getTps1m() { return roundToTenths(BukkitTpsCalculator.getTps1m()); }
+
+    @Override
+    public float getTps5m() { return roundToTenths(BukkitTpsCalculator.getTps5m()); }
+
+    @Override
+    public float getTps15m() { return roundToTenths(BukkitTpsCalculator.getTps15m()); }
+
+    @Override
+    public float getTickIntervalMean() { return roundToTenths(BukkitTpsCalculator.getTickIntervalMean()); }
+
+    @Override
+    public float getTickIntervalP50() { return roundToTenths(BukkitTpsCalculator.getTickIntervalP50()); }
+
+    @Override
+    public float getTickIntervalP95() { return roundToTenths(BukkitTpsCalculator.getTickIntervalP95()); }
+
+    @Override
+    public float getTickIntervalP99() { return roundToTenths(BukkitTpsCalculator.getTickIntervalP99()); }
+
+    @Override
+    public float getTickIntervalMax() { return roundToTenths(BukkitTpsCalculator.getTickIntervalMax()); }
+
     @Override
     public float getMaxRam() {
         return roundToTenths(Runtime.getRuntime().maxMemory() / BYTES_IN_MB);
@@ -73,14 +96,10 @@ public class BukkitDataFetcher implements IMcscpDataFetcher {
 
     //Commands
     @Override
-    public String sendConsoleCmd(String cmd) {
-        mServer.dispatchCommand(mSender, cmd);
-        LinkedList<String> messages = mSender.retrieveMessages();
-        StringBuilder response = new StringBuilder();
-        for (String message : messages) {
-            response.append(message);
-        }
-        return response.toString();
+    public void sendConsoleCmd(String cmd, IMcscpCommandOutput output) {
+        //Every command gets its own sender so output that arrives later still
+        //reaches the client that sent the command
+        mServer.dispatchCommand(new BukkitCommandSender(output), cmd);
     }
 
     @Override
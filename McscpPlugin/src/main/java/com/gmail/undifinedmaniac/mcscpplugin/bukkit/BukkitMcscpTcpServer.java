@@ -5,20 +5,27 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityRegainHealthEvent;
+import org.bukkit.event.entity.FoodLevelChangeEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLevelChangeEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.scheduler.BukkitRunnable;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
 import com.gmail.undifinedmaniac.mcscpplugin.network.McscpTcpServer;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
 
 public class BukkitMcscpTcpServer extends BukkitRunnable implements Listener {
 
     private McscpTcpServer mServer;
 
-    BukkitMcscpTcpServer(McscpPlugin plugin, String address, int port) {
+    BukkitMcscpTcpServer(McscpPlugin plugin, IMcscpServerConfig config) {
         super();
-        mServer = new McscpTcpServer(new BukkitDataFetcher(plugin), address, port);
+        mServer = new McscpTcpServer(new BukkitDataFetcher(plugin), config);
         Bukkit.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
@@ -76,7 +83,59 @@ public class BukkitMcscpTcpServer extends BukkitRunnable implements Listener {
         mServer.deathEvent(player.getUniqueId().toString(), event.getDeathMessage());
     }
 
-    public void logEvent(String newData) {
-        mServer.logEvent(newData);
+    /**
+     * Event handler for damage events, marks the health of a player as changed
+     * @param event the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDamage(EntityDamageEvent event) {
+        if (event.getEntity() instanceof Player)
+            keyChanged((Player) event.getEntity(), McscpPlayerTable.Key.Health);
+    }
+
+    /**
+     * Event handler for health regain events, marks the health of a player as changed
+     * @param event the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityRegainHealth(EntityRegainHealthEvent event) {
+        if (event.getEntity() instanceof Player)
+            keyChanged((Player) event.getEntity(), McscpPlayerTable.Key.Health);
+    }
+
+    /**
+     * Event handler for food level events, marks the hunger of a player as changed
+     * @param event the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFoodLevelChange(FoodLevelChangeEvent event) {
+        if (event.getEntity() instanceof Player)
+            keyChanged((Player) event.getEntity(), McscpPlayerTable.Key.Hunger);
+    }
+
+    /**
+     * Event handler for level change events
+     * @param event the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLevelChange(PlayerLevelChangeEvent event) {
+        keyChanged(event.getPlayer(), McscpPlayerTable.Key.Level);
+    }
+
+    /**
+     * Event handler for world change events
+     * @param event the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        keyChanged(event.getPlayer(), McscpPlayerTable.Key.World);
+    }
+
+    public void logEvent(long time, String level, String message) {
+        mServer.logEvent(time, level, message);
+    }
+
+    private void keyChanged(Player player, McscpPlayerTable.Key key) {
+        mServer.playerKeyChanged(player.getUniqueId().toString(), key);
     }
 }
@@ -2,26 +2,176 @@ package com.gmail.undifinedmaniac.mcscpplugin.bukkit;
 
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.Arrays;
+
+/**
+ * Runs every tick and measures the server speed with System.nanoTime()
+ *
+ * Ticks are counted per second in a ring that covers 15 minutes, the 1, 5 and
+ * 15 minute TPS are running sums over that ring. The tick interval is the time
+ * between the starts of two ticks (so at least 50 ms while the server keeps
+ * up), the last minute of it is kept in a second ring. All arrays are allocated
+ * up front, a tick only writes into them and the statistics are worked out
+ * once per second
+ */
 public class BukkitTpsCalculator extends BukkitRunnable {
-    private long mCurrentSecond;
-    private int mTickCount;
 
-    private static float kTps = 0;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final int SECONDS = 15 * 60;
+    private static final int RECENT_SECONDS = 5;
+    private static final int TICK_WINDOW = 60 * 20;
+
+    private int[] mTicksPerSecond = new int[SECONDS];
+    private long mCurrentSecond = -1;
+    private boolean mCountingFullSeconds = false;
+    private int mTickCount = 0;
+    private long mCompletedSeconds = 0;
+    private int mRecentTicks, mTicks1m, mTicks5m, mTicks15m;
+
+    private long[] mTickTimes = new long[TICK_WINDOW];
+    private long[] mSortedTickTimes = new long[TICK_WINDOW];
+    private int mNextTickTime = 0;
+    private int mTickTimeCount = 0;
+    private long mLastTick = 0;
 
+    private static float kTps = 0, kTps1m = 0, kTps5m = 0, kTps15m = 0;
+    private static float kTickIntervalMean = 0, kTickIntervalP50 = 0, kTickIntervalP95 = 0, kTickIntervalP99 = 0, kTickIntervalMax = 0;
+
+    /**
+     * Gets the TPS over the last few seconds
+     * @return the TPS
+     */
     public static float getTps() {
         return kTps;
     }
 
+    public static float getTps1m() {
+        return kTps1m;
+    }
+
+    public static float getTps5m() {
+        return kTps5m;
+    }
+
+    public static float getTps15m() {
+        return kTps15m;
+    }
+
+    public static float getTickIntervalMean() {
+        return kTickIntervalMean;
+    }
+
+    public static float getTickIntervalP50() {
+        return kTickIntervalP50;
+    }
+
+    public static float getTickIntervalP95() {
+        return kTickIntervalP95;
+    }
+
+    public static float getTickIntervalP99() {
+        return kTickIntervalP99;
+    }
+
+    public static float getTickIntervalMax() {
+        return kTickIntervalMax;
+    }
+
     @Override
     public void run() {
-        long mStartingSecond = (System.currentTimeMillis() / 1000);
-
-        if (mStartingSecond == mCurrentSecond) {
-            mTickCount++;
-        } else {
-            mCurrentSecond = mStartingSecond;
-            kTps = (kTps == 0) ? mTickCount : ((kTps + mTickCount) / 2);
-            mTickCount = 1;
+        long now = System.nanoTime();
+
+        if (mLastTick != 0) {
+            mTickTimes[mNextTickTime] = now - mLastTick;
+            mNextTickTime = (mNextTickTime + 1) % TICK_WINDOW;
+            mTickTimeCount = Math.min(mTickTimeCount + 1, TICK_WINDOW);
         }
+        mLastTick = now;
+
+        long second = now / NANOS_PER_SECOND;
+        if (second != mCurrentSecond) {
+            //The first second is only partly counted and is skipped
+            if (mCurrentSecond != -1 && mCountingFullSeconds) {
+                //Seconds without a single tick count as 0 TPS
+                long missed = Math.min(second - mCurrentSecond, SECONDS);
+                for (long i = missed - 1; i >= 0; i--)
+                    completeSecond(second - 1 - i, i == missed - 1 ? mTickCount : 0);
+
+                updateTps();
+                updateTickIntervals();
+            }
+
+            mCountingFullSeconds = mCurrentSecond != -1;
+            mCurrentSecond = second;
+            mTickCount = 0;
+        }
+
+        mTickCount++;
+    }
+
+    /**
+     * Moves a finished second into the ring and the running sums
+     * @param second the second
+     * @param ticks the ticks counted in that second
+     */
+    private void completeSecond(long second, int ticks) {
+        mRecentTicks += ticks - secondsAgo(second, RECENT_SECONDS);
+        mTicks1m += ticks - secondsAgo(second, 60);
+        mTicks5m += ticks - secondsAgo(second, 5 * 60);
+        mTicks15m += ticks - secondsAgo(second, SECONDS);
+
+        mTicksPerSecond[slot(second)] = ticks;
+        mCompletedSeconds++;
+    }
+
+    /**
+     * Gets the ticks of a second that is just leaving a window
+     * @param second the second that finished
+     * @param window the length of the window in seconds
+     * @return the ticks, 0 if the window is not full yet
+     */
+    private int secondsAgo(long second, int window) {
+        if (mCompletedSeconds < window)
+            return 0;
+
+        return mTicksPerSecond[slot(second - window)];
+    }
+
+    private static int slot(long second) {
+        return (int) Math.floorMod(second, (long) SECONDS);
+    }
+
+    private void updateTps() {
+        kTps = average(mRecentTicks, RECENT_SECONDS);
+        kTps1m = average(mTicks1m, 60);
+        kTps5m = average(mTicks5m, 5 * 60);
+        kTps15m = average(mTicks15m, SECONDS);
+    }
+
+    private float average(int ticks, int window) {
+        return Math.min(20f, (float) ticks / Math.min(window, mCompletedSeconds));
+    }
+
+    private void updateTickIntervals() {
+        int count = mTickTimeCount;
+        if (count == 0)
+            return;
+
+        System.arraycopy(mTickTimes, 0, mSortedTickTimes, 0, count);
+        Arrays.sort(mSortedTickTimes, 0, count);
+
+        long total = 0;
+        for (int i = 0; i < count; i++)
+            total += mSortedTickTimes[i];
+
+        kTickIntervalMean = toMillis(total / count);
+        kTickIntervalP50 = toMillis(mSortedTickTimes[(count - 1) * 50 / 100]);
+        kTickIntervalP95 = toMillis(mSortedTickTimes[(count - 1) * 95 / 100]);
+        kTickIntervalP99 = toMillis(mSortedTickTimes[(count - 1) * 99 / 100]);
+        kTickIntervalMax = toMillis(mSortedTickTimes[count - 1]);
+    }
+
+    private static float toMillis(long nanos) {
+        return nanos / 1000000f;
     }
 }
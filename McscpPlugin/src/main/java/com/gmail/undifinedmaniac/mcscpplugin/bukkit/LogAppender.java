@@ -1,8 +1,5 @@
 package com.gmail.undifinedmaniac.mcscpplugin.bukkit;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
 
@@ -16,11 +13,14 @@ public class LogAppender extends AbstractAppender {
         start();
     }
 
+    /**
+     * Hands the raw event to the server, formatting happens on the network side.
+     * The message is captured here because log4j may reuse its message objects
+     * @param event the log event
+     */
     @Override
     public void append(LogEvent event) {
-        String newData = (new SimpleDateFormat("hh:mm a").format(
-                new Date()) + " [" + event.getLevel().toString() + "] " +
+        mPlugin.logEvent(event.getTimeMillis(), event.getLevel().name(),
                 event.getMessage().getFormattedMessage());
-        mPlugin.logEvent(newData);
     }
-}
\ No newline at end of file
+}
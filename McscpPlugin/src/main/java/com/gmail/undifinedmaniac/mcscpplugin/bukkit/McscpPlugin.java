@@ -1,5 +1,6 @@
 package com.gmail.undifinedmaniac.mcscpplugin.bukkit;
 
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpServerSettings;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import org.apache.logging.log4j.LogManager;
@@ -37,8 +38,9 @@ public final class McscpPlugin extends JavaPlugin {
         mTpsCalculator = new BukkitTpsCalculator();
         mTpsCalculator.runTaskTimer(this, 0, 1);
 
-        //Create the TCP server instance and start it
-        mServer = new BukkitMcscpTcpServer(this, mConfig.getAddress(), mConfig.getPort());
+        //Create the TCP server instance and start it, the settings are read once
+        //here so the network side never touches the Bukkit config
+        mServer = new BukkitMcscpTcpServer(this, new McscpServerSettings(mConfig));
         mServer.start();
         mServer.runTaskTimer(this, 0, 1);
     }
@@ -60,8 +62,8 @@ public final class McscpPlugin extends JavaPlugin {
         return mAppender;
     }
 
-    public void logEvent(String newData) {
-        mServer.logEvent(newData);
+    public void logEvent(long time, String level, String message) {
+        mServer.logEvent(time, level, message);
     }
 
     /**
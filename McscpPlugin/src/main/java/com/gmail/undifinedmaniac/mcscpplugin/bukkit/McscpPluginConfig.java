@@ -1,10 +1,24 @@
 package com.gmail.undifinedmaniac.mcscpplugin.bukkit;
 
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpHistory;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpOutgoingQueue;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+
+import java.io.File;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.logging.Level;
+
 /**
  * This class simply creates/reads a config file that contains
  * The address and port for the server
  */
-public class McscpPluginConfig {
+public class McscpPluginConfig implements IMcscpServerConfig {
 
     private McscpPlugin mPlugin;
 
@@ -18,6 +32,53 @@ public class McscpPluginConfig {
     public void loadConfiguration() {
         mPlugin.getConfig().addDefault("address", "127.0.0.1");
         mPlugin.getConfig().addDefault("port", 54620);
+        mPlugin.getConfig().addDefault("network-thread", true);
+        mPlugin.getConfig().addDefault("event-batch-ms", 5);
+        mPlugin.getConfig().addDefault("max-line-length", 8192);
+        mPlugin.getConfig().addDefault("commands.output-window-ms", 100);
+        mPlugin.getConfig().addDefault("commands.max-in-flight", 32);
+        mPlugin.getConfig().addDefault("commands.tick-budget-ns", 5000000);
+        //Command types without their own limits use the default ones
+        mPlugin.getConfig().addDefault("rate-limits.default.per-second", 20);
+        mPlugin.getConfig().addDefault("rate-limits.default.burst", 50);
+        mPlugin.getConfig().addDefault("rate-limits.Console.per-second", 5);
+        mPlugin.getConfig().addDefault("rate-limits.Console.burst", 20);
+        mPlugin.getConfig().addDefault("rate-limits.Chat.per-second", 2);
+        mPlugin.getConfig().addDefault("rate-limits.Chat.burst", 10);
+        mPlugin.getConfig().addDefault("rate-limits.Broadcast.per-second", 0.5);
+        mPlugin.getConfig().addDefault("rate-limits.Broadcast.burst", 5);
+        mPlugin.getConfig().addDefault("rate-limits.disconnect-after", 200);
+        mPlugin.getConfig().addDefault("slow-clients.max-queue-bytes", 1048576);
+        mPlugin.getConfig().addDefault("slow-clients.policies", Arrays.asList("DropOldestLog", "CoalesceUpdates", "Disconnect"));
+        mPlugin.getConfig().addDefault("slow-clients.grace-period-ms", 30000);
+        mPlugin.getConfig().addDefault("log-buffer-size", 4096);
+        mPlugin.getConfig().addDefault("log-backlog.max-lines", 1000);
+        mPlugin.getConfig().addDefault("log-backlog.max-bytes", 131072);
+        mPlugin.getConfig().addDefault("log-backlog.send-on-flag", false);
+        mPlugin.getConfig().addDefault("history.enabled", true);
+        mPlugin.getConfig().addDefault("history.file", "history.dat");
+        //The number of periods kept at every resolution
+        mPlugin.getConfig().addDefault("history.slots.Second", 3600);
+        mPlugin.getConfig().addDefault("history.slots.Minute", 1440);
+        mPlugin.getConfig().addDefault("history.slots.Hour", 720);
+        mPlugin.getConfig().addDefault("compression.enabled", true);
+        mPlugin.getConfig().addDefault("compression.level", 6);
+        mPlugin.getConfig().addDefault("compression.min-batch-bytes", 256);
+        //Keys that game events mark as changed only need a slow safety poll
+        mPlugin.getConfig().addDefault("player-poll-ticks.Name", 6000);
+        mPlugin.getConfig().addDefault("player-poll-ticks.DisplayName", 100);
+        mPlugin.getConfig().addDefault("player-poll-ticks.Ip", 6000);
+        mPlugin.getConfig().addDefault("player-poll-ticks.World", 1200);
+        mPlugin.getConfig().addDefault("player-poll-ticks.MaxHealth", 100);
+        mPlugin.getConfig().addDefault("player-poll-ticks.Health", 600);
+        mPlugin.getConfig().addDefault("player-poll-ticks.Hunger", 600);
+        mPlugin.getConfig().addDefault("player-poll-ticks.Level", 1200);
+        //How much a number has to change before clients are told, 0 for any change
+        mPlugin.getConfig().addDefault("change-thresholds.server.Tps", 0.0);
+        mPlugin.getConfig().addDefault("change-thresholds.server.TotalRam", 0.0);
+        mPlugin.getConfig().addDefault("change-thresholds.server.UsedRam", 1.0);
+        mPlugin.getConfig().addDefault("change-thresholds.player.Health", 0.0);
+        mPlugin.getConfig().addDefault("change-thresholds.player.Hunger", 0.0);
         mPlugin.getConfig().options().copyDefaults(true);
         mPlugin.saveConfig();
     }
@@ -26,6 +87,7 @@ public class McscpPluginConfig {
      * Gets the address for the server from the config
      * @return the address
      */
+    @Override
     public String getAddress() {
         return mPlugin.getConfig().getString("address");
     }
@@ -34,7 +96,263 @@ public class McscpPluginConfig {
      * Gets the port for the server from the config
      * @return the port
      */
+    @Override
     public int getPort() {
         return mPlugin.getConfig().getInt("port");
     }
+
+    /**
+     * Checks if socket I/O should run on its own thread instead of the
+     * server tick
+     * @return true if a network thread should be used
+     */
+    @Override
+    public boolean useNetworkThread() {
+        return mPlugin.getConfig().getBoolean("network-thread");
+    }
+
+    /**
+     * Gets how long game events and log lines are collected before the network
+     * side sends them together
+     * @return the interval in milliseconds, 0 to send them as soon as possible
+     */
+    @Override
+    public long getEventBatchInterval() {
+        return mPlugin.getConfig().getLong("event-batch-ms");
+    }
+
+    /**
+     * Gets the longest line a client may send before it is discarded
+     * @return the maximum line length in characters
+     */
+    @Override
+    public int getMaxLineLength() {
+        return mPlugin.getConfig().getInt("max-line-length");
+    }
+
+    /**
+     * Gets how long the output of a console command is collected before it is
+     * sent to the client as one reply, later output is sent as it arrives
+     * @return the window in milliseconds
+     */
+    @Override
+    public long getCommandOutputWindow() {
+        return mPlugin.getConfig().getLong("commands.output-window-ms");
+    }
+
+    /**
+     * Gets how many commands a client may have waiting for the tick or the
+     * history thread, further ones are answered with [ERROR]:[BUSY]
+     * @return the limit per client
+     */
+    @Override
+    public int getMaxCommandsInFlight() {
+        return mPlugin.getConfig().getInt("commands.max-in-flight");
+    }
+
+    /**
+     * Gets how long client commands may run per tick, the rest waits for the
+     * next tick
+     * @return the budget in nanoseconds
+     */
+    @Override
+    public long getTickBudget() {
+        return mPlugin.getConfig().getLong("commands.tick-budget-ns");
+    }
+
+    /**
+     * Gets how many commands of a type a client may send per second on average
+     * @param type the command type
+     * @return the rate, 0 for no limit
+     */
+    @Override
+    public float getCommandRate(McscpCommand.CommandType type) {
+        return (float) mPlugin.getConfig().getDouble("rate-limits." + type.name() + ".per-second",
+                mPlugin.getConfig().getDouble("rate-limits.default.per-second"));
+    }
+
+    /**
+     * Gets how many commands of a type a client may send at once before the
+     * rate applies
+     * @param type the command type
+     * @return the burst size
+     */
+    @Override
+    public int getCommandBurst(McscpCommand.CommandType type) {
+        return mPlugin.getConfig().getInt("rate-limits." + type.name() + ".burst",
+                mPlugin.getConfig().getInt("rate-limits.default.burst"));
+    }
+
+    /**
+     * Gets how many commands of a client may be rejected within 10 seconds
+     * before it is disconnected
+     * @return the number of rejections, 0 to never disconnect
+     */
+    @Override
+    public int getMaxRateLimitViolations() {
+        return mPlugin.getConfig().getInt("rate-limits.disconnect-after");
+    }
+
+    /**
+     * Gets the number of bytes that may be queued for a client before the
+     * slow client policies apply. A client with twice as many bytes queued is
+     * always disconnected
+     * @return the cap in bytes
+     */
+    @Override
+    public long getMaxQueueBytes() {
+        return mPlugin.getConfig().getLong("slow-clients.max-queue-bytes");
+    }
+
+    /**
+     * Gets what to do with a client that reaches its queue cap
+     * @return the enabled policies
+     */
+    @Override
+    public Set<McscpOutgoingQueue.Policy> getSlowClientPolicies() {
+        Set<McscpOutgoingQueue.Policy> policies = EnumSet.noneOf(McscpOutgoingQueue.Policy.class);
+
+        for (String name : mPlugin.getConfig().getStringList("slow-clients.policies")) {
+            try {
+                policies.add(McscpOutgoingQueue.Policy.valueOf(name));
+            } catch (IllegalArgumentException error) {
+                mPlugin.logMessage(Level.WARNING, "Unknown slow client policy in config: " + name);
+            }
+        }
+
+        return policies;
+    }
+
+    /**
+     * Gets how long a client may stay over its queue cap before it is disconnected
+     * @return the grace period in milliseconds
+     */
+    @Override
+    public long getSlowClientGracePeriod() {
+        return mPlugin.getConfig().getLong("slow-clients.grace-period-ms");
+    }
+
+    /**
+     * Gets how many log lines may wait for the network side before new lines
+     * are dropped
+     * @return the number of lines, rounded up to a power of two
+     */
+    @Override
+    public int getLogBufferSize() {
+        return mPlugin.getConfig().getInt("log-buffer-size");
+    }
+
+    /**
+     * Gets how many of the newest log lines are kept for clients that connect later
+     * @return the number of lines, 0 to keep no backlog
+     */
+    @Override
+    public int getLogBacklogLines() {
+        return mPlugin.getConfig().getInt("log-backlog.max-lines");
+    }
+
+    /**
+     * Gets the memory set aside for the log backlog
+     * @return the size in bytes
+     */
+    @Override
+    public int getLogBacklogBytes() {
+        return mPlugin.getConfig().getInt("log-backlog.max-bytes");
+    }
+
+    /**
+     * Checks if a client is sent the whole backlog when it enables SendServerLog
+     * @return true to send the backlog
+     */
+    @Override
+    public boolean sendLogBacklogOnFlag() {
+        return mPlugin.getConfig().getBoolean("log-backlog.send-on-flag");
+    }
+
+    /**
+     * Checks if the server keys are recorded into the history file
+     * @return true if history is recorded
+     */
+    @Override
+    public boolean recordHistory() {
+        return mPlugin.getConfig().getBoolean("history.enabled");
+    }
+
+    /**
+     * Gets the path of the history file, relative names are in the plugin folder
+     * @return the path
+     */
+    @Override
+    public String getHistoryFile() {
+        return new File(mPlugin.getDataFolder(), mPlugin.getConfig().getString("history.file")).getPath();
+    }
+
+    /**
+     * Gets how many periods of a resolution the history file keeps, the file
+     * size is fixed by these counts
+     * @param resolution the resolution
+     * @return the number of periods
+     */
+    @Override
+    public int getHistoryLength(McscpHistory.Resolution resolution) {
+        return mPlugin.getConfig().getInt("history.slots." + resolution.name());
+    }
+
+    /**
+     * Checks if clients may ask for a compressed stream during the handshake
+     * @return true if compression is allowed
+     */
+    @Override
+    public boolean allowCompression() {
+        return mPlugin.getConfig().getBoolean("compression.enabled");
+    }
+
+    /**
+     * Gets the deflate level for compressed clients
+     * @return the level from 0 (none) to 9 (best)
+     */
+    @Override
+    public int getCompressionLevel() {
+        return mPlugin.getConfig().getInt("compression.level");
+    }
+
+    /**
+     * Gets the smallest batch that is worth compressing, smaller batches are
+     * sent as they are
+     * @return the minimum batch size in bytes
+     */
+    @Override
+    public int getMinCompressedBatch() {
+        return mPlugin.getConfig().getInt("compression.min-batch-bytes");
+    }
+
+    /**
+     * Gets how often a player key is read even if no event marked it as changed
+     * @param key the key
+     * @return the interval in ticks, 0 to never poll
+     */
+    @Override
+    public int getPlayerPollInterval(McscpPlayerTable.Key key) {
+        return mPlugin.getConfig().getInt("player-poll-ticks." + key.name());
+    }
+
+    /**
+     * Gets how much a server number has to change before the change is sent
+     * @param key the key
+     * @return the threshold, 0 for any change
+     */
+    @Override
+    public float getServerChangeThreshold(McscpServerTable.Key key) {
+        return (float) mPlugin.getConfig().getDouble("change-thresholds.server." + key.name());
+    }
+
+    /**
+     * Gets how much a player number has to change before the change is sent
+     * @param key the key
+     * @return the threshold, 0 for any change
+     */
+    @Override
+    public float getPlayerChangeThreshold(McscpPlayerTable.Key key) {
+        return (float) mPlugin.getConfig().getDouble("change-thresholds.player." + key.name());
+    }
 }
@@ -2,34 +2,55 @@ package com.gmail.undifinedmaniac.mcscpplugin.command;
 
 import com.gmail.undifinedmaniac.mcscpplugin.network.McscpClient;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Represents a command from an MCSCP client
+ *
+ * Commands follow the grammar [TAG]:[FIELD:value]:[FIELD:value], an optional
+ * request id may follow the tag as [TAG]:[ID:value]:[FIELD:value]. The line is
+ * tokenized in a single pass, the command type is picked from the first tag and
+ * the fields are kept as offsets into the line until they are asked for
  */
 public class McscpCommand {
 
     public enum CommandType {
-        Console, Chat, Broadcast, Stop, SetFlag, Ping, Unknown
+        Console("CMD", "CONTENT"),
+        Chat("MSG", "SENDER", "CONTENT"),
+        Broadcast("BROADCAST", "CONTENT"),
+        Stop("STOP"),
+        SetFlag("SETFLAG", "NAME", "VALUE"),
+        Ping("PING"),
+        Subscribe("SUBSCRIBE", "SERVER", "PLAYER"),
+        Filter("FILTER", "TYPE", "VALUE"),
+        LogBacklog("LOGBACKLOG", "LINES"),
+        History("HISTORY", "KEY", "FROM", "TO"),
+        Stats("STATS"),
+        Unknown(null);
+
+        private final String mTag;
+        private final String[] mFields;
+
+        CommandType(String tag, String... fields) {
+            mTag = tag;
+            mFields = fields;
+        }
     }
 
-    private static Pattern CONSOLE_PATTERN = Pattern.compile("(?i)\\[CMD]:\\[CONTENT:(.*)]"),
-                           CHAT_PATTERN = Pattern.compile("(?i)\\[MSG]:\\[SENDER:(.*?)]:\\[CONTENT:(.*)]"),
-                           BROADCAST_PATTERN = Pattern.compile("(?i)\\[BROADCAST]:\\[CONTENT:(.*)]"),
-                           SET_FLAG_PATTERN = Pattern.compile("(?i)\\[SETFLAG]:\\[NAME:(.*)]:\\[VALUE:(.*)]");
+    private static final CommandType[] TYPES = CommandType.values();
+    private static final int MAX_FIELDS = 3;
 
     private McscpClient mClient;
     private CommandType mType;
     private String mData, mReply;
-    private Matcher mMatcher;
+    private int[] mFieldStart = new int[MAX_FIELDS];
+    private int[] mFieldEnd = new int[MAX_FIELDS];
+    private int mIdStart = -1, mIdEnd = -1;
 
     public McscpCommand(McscpClient client, String data) {
         mClient = client;
         mData = data;
         mReply = null;
 
-        mType = detectCommandType();
+        mType = parse();
     }
 
     /**
@@ -57,19 +78,71 @@ public class McscpCommand {
     }
 
     /**
-     * Gets the matcher for this command
-     * @return The matcher
+     * Gets the value of a field, in the order the fields appear in the command
+     * (e.g. 0 for SENDER and 1 for CONTENT in a chat command)
+     * @param index the index of the field
+     * @return the value
+     */
+    public String getField(int index) {
+        return mData.substring(mFieldStart[index], mFieldEnd[index]);
+    }
+
+    /**
+     * Detects the command type of a line from its first tag only, without
+     * allocating or looking at the fields
+     * @param data the line
+     * @return the type the tag names, Unknown if it names none
      */
-    public Matcher getMatcher() {
-        return mMatcher;
+    public static CommandType peekType(String data) {
+        int tagEnd = findTagEnd(data);
+        return tagEnd == -1 ? CommandType.Unknown : findType(data, tagEnd);
     }
 
     /**
-     * Sets a reply to send to the client
+     * Reads the request id of a line without parsing the rest of it
+     * @param data the line
+     * @return the id, or null if the line has none
+     */
+    public static String peekId(String data) {
+        int tagEnd = findTagEnd(data);
+        int idStart = tagEnd + 6;
+        if (tagEnd == -1 || !data.regionMatches(true, tagEnd + 1, ":[ID:", 0, 5))
+            return null;
+
+        int idEnd = data.indexOf(']', idStart);
+        return idEnd > idStart ? data.substring(idStart, idEnd) : null;
+    }
+
+    /**
+     * Gets the request id the client attached to this command
+     * @return the id, or null if the command has none
+     */
+    public String getId() {
+        return mIdStart == -1 ? null : mData.substring(mIdStart, mIdEnd);
+    }
+
+    /**
+     * Sets a reply to send to the client, the request id of the command is
+     * added to it
      * @param reply the reply message
      */
     public void setReply(String reply) {
-        mReply = reply;
+        mReply = addId(reply, getId());
+    }
+
+    /**
+     * Adds a request id to a reply, right after its first tag
+     * (e.g. [PONG] becomes [PONG]:[ID:7])
+     * @param reply the reply
+     * @param id the request id, or null
+     * @return the reply with the id
+     */
+    public static String addId(String reply, String id) {
+        int tagEnd = reply.indexOf(']');
+        if (id == null || tagEnd == -1)
+            return reply;
+
+        return reply.substring(0, tagEnd + 1) + ":[ID:" + id + "]" + reply.substring(tagEnd + 1);
     }
 
     /**
@@ -89,44 +162,132 @@ public class McscpCommand {
     }
 
     /**
-     * Detects the command type
+     * Detects the command type from the first tag and finds the field values
      * @return the type of command
      */
-    private CommandType detectCommandType() {
+    private CommandType parse() {
+        int length = mData.length();
+        int tagEnd = findTagEnd(mData);
+        if (tagEnd == -1)
+            return CommandType.Unknown;
 
-        //Check all of our regexes first
-        Matcher matcher = CONSOLE_PATTERN.matcher(mData);
-        if (matcher.find()) {
-            mMatcher = matcher;
-            return CommandType.Console;
-        }
+        //Dispatch on the first tag
+        CommandType type = findType(mData, tagEnd);
 
-        matcher = CHAT_PATTERN.matcher(mData);
-        if (matcher.find()) {
-            mMatcher = matcher;
-            return CommandType.Chat;
-        }
+        int position = tagEnd + 1;
 
-        matcher = BROADCAST_PATTERN.matcher(mData);
-        if (matcher.find()) {
-            mMatcher = matcher;
-            return CommandType.Broadcast;
+        //The request id is the only optional field, it ends at the first ]. It is
+        //read before giving up on an unknown tag so the error can carry it
+        int idStart = matchFieldStart(position, "ID");
+        if (idStart != -1) {
+            int idEnd = mData.indexOf(']', idStart);
+            if (idEnd <= idStart)
+                return CommandType.Unknown;
+
+            mIdStart = idStart;
+            mIdEnd = idEnd;
+            position = idEnd + 1;
         }
 
-        matcher = SET_FLAG_PATTERN.matcher(mData);
-        if (matcher.find()) {
-            mMatcher = matcher;
-            return CommandType.SetFlag;
+        if (type == CommandType.Unknown)
+            return type;
+
+        String[] fields = type.mFields;
+
+        for (int i = 0; i < fields.length; i++) {
+            //Every field starts with :[NAME:
+            int valueStart = matchFieldStart(position, fields[i]);
+            if (valueStart == -1)
+                return CommandType.Unknown;
+
+            int valueEnd;
+            if (i == fields.length - 1) {
+                //The last value runs up to the closing bracket at the end of the line
+                valueEnd = length - 1;
+                if (valueEnd < valueStart || mData.charAt(valueEnd) != ']')
+                    return CommandType.Unknown;
+            } else {
+                //Other values end where the next field starts, so a value may contain ]
+                valueEnd = findFieldStart(valueStart, fields[i + 1]);
+                if (valueEnd == -1)
+                    return CommandType.Unknown;
+            }
+
+            mFieldStart[i] = valueStart;
+            mFieldEnd[i] = valueEnd;
+            position = valueEnd + 1;
         }
 
-        //Then check against static stuff
-        String data = mData.toUpperCase();
+        //Commands without fields must not have anything after the tag
+        if (fields.length == 0 && position != length)
+            return CommandType.Unknown;
 
-        if (data.equals("[STOP]"))
-            return CommandType.Stop;
-        else if (data.equals("[PING]"))
-            return CommandType.Ping;
+        return type;
+    }
+
+    /**
+     * Finds the end of the first tag
+     * @param data the line
+     * @return the position of the ], or -1 if the line does not start with a tag
+     */
+    private static int findTagEnd(String data) {
+        if (data.length() < 2 || data.charAt(0) != '[')
+            return -1;
+
+        return data.indexOf(']', 1);
+    }
+
+    /**
+     * Finds the command type a tag names
+     * @param data the line
+     * @param tagEnd the position of the ] that ends the tag
+     * @return the type, Unknown if the tag names none
+     */
+    private static CommandType findType(String data, int tagEnd) {
+        for (CommandType candidate : TYPES) {
+            String tag = candidate.mTag;
+            if (tag != null && tag.length() == tagEnd - 1 && data.regionMatches(true, 1, tag, 0, tag.length()))
+                return candidate;
+        }
 
         return CommandType.Unknown;
     }
+
+    /**
+     * Checks for :[NAME: at a position
+     * @param position where the field should start
+     * @param name the field name
+     * @return the start of the value, or -1 if the field is not there
+     */
+    private int matchFieldStart(int position, String name) {
+        int nameStart = position + 2;
+        int valueStart = nameStart + name.length() + 1;
+
+        if (valueStart > mData.length() ||
+                mData.charAt(position) != ':' || mData.charAt(position + 1) != '[' ||
+                !mData.regionMatches(true, nameStart, name, 0, name.length()) ||
+                mData.charAt(valueStart - 1) != ':')
+            return -1;
+
+        return valueStart;
+    }
+
+    /**
+     * Finds the first ]:[NAME: at or after a position
+     * @param from where to start searching
+     * @param name the field name
+     * @return the position of the ], or -1 if not found
+     */
+    private int findFieldStart(int from, String name) {
+        int position = mData.indexOf(']', from);
+
+        while (position != -1) {
+            if (matchFieldStart(position + 1, name) != -1)
+                return position;
+
+            position = mData.indexOf(']', position + 1);
+        }
+
+        return -1;
+    }
 }
@@ -2,9 +2,9 @@ package com.gmail.undifinedmaniac.mcscpplugin.command;
 
 import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
 import com.gmail.undifinedmaniac.mcscpplugin.network.McscpClient;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpConsoleOutput;
 
 import java.util.logging.Level;
-import java.util.regex.Matcher;
 
 import java.net.SocketAddress;
 
@@ -19,6 +19,36 @@ public class McscpCommandProcessor {
         mFetcher = fetcher;
     }
 
+    /**
+     * Checks if a command has to be executed on the server tick because
+     * it touches the game state
+     * @param command the command to check
+     * @return true if the command must run on the tick thread
+     */
+    public boolean requiresTickThread(McscpCommand command) {
+        switch (command.getType()) {
+            case Console:
+            case Chat:
+            case Broadcast:
+            case Stop:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if a command is answered after readEvent() has returned, these
+     * count against the in-flight limit of the client
+     * @param command the command to check
+     * @return true if the command runs on the tick or the history thread or
+     * needs the tick's stats
+     */
+    public boolean completesLater(McscpCommand command) {
+        return requiresTickThread(command) || command.getType() == McscpCommand.CommandType.History ||
+                command.getType() == McscpCommand.CommandType.Stats;
+    }
+
     /**
      * Executes a command
      * @param command the command to execute
@@ -26,18 +56,20 @@ public class McscpCommandProcessor {
     public void processCommand(McscpCommand command) {
         switch (command.getType()) {
             case Console: {
-                String consoleCmd = command.getMatcher().group(1);
-                command.setReply(mFetcher.sendConsoleCmd(consoleCmd));
+                //The output is collected and sent by the network side, not as the reply
+                McscpConsoleOutput output = new McscpConsoleOutput(command.getClient(), command.getId());
+                mFetcher.sendConsoleCmd(command.getField(0), output);
+                output.dispatched();
                 break;
             }
             case Chat: {
-                String username = command.getMatcher().group(1);
-                String message = command.getMatcher().group(2);
+                String username = command.getField(0);
+                String message = command.getField(1);
                 mFetcher.sendChatMessage(username, message);
                 break;
             }
             case Broadcast: {
-                mFetcher.broadcastMessage(command.getMatcher().group(1));
+                mFetcher.broadcastMessage(command.getField(0));
                 break;
             }
             case Stop: {
@@ -47,14 +79,10 @@ public class McscpCommandProcessor {
             case SetFlag: {
                 boolean success = false;
 
-                Matcher flagMatcher = command.getMatcher();
-                String flagNameString = flagMatcher.group(1).toUpperCase();
-                String flagValueString = flagMatcher.group(2).toUpperCase();
-
-                McscpClient.Flag flagName = McscpClient.getFlagType(flagNameString);
+                McscpClient.Flag flagName = McscpClient.getFlagType(command.getField(0));
 
                 if (flagName != null) {
-                    Boolean flagValue = McscpClient.convertStringToBool(flagValueString);
+                    Boolean flagValue = McscpClient.convertStringToBool(command.getField(1));
 
                     if (flagValue != null) {
                         command.getClient().setFlag(flagName, flagValue);
@@ -63,26 +91,53 @@ public class McscpCommandProcessor {
                 }
 
                 if (!success)
-                    invalidCommandError(command.getClient());
+                    invalidCommandError(command);
+                break;
+            }
+            case Stats: {
+                command.getClient().requestStats(command.getId());
                 break;
             }
             case Ping: {
                 command.setReply("[PONG]");
                 break;
             }
+            case Filter: {
+                if (!command.getClient().filterPlayers(command.getField(0), command.getField(1)))
+                    invalidCommandError(command);
+                break;
+            }
+            case LogBacklog: {
+                if (!command.getClient().requestLogBacklog(command.getField(0), command.getId()))
+                    invalidCommandError(command);
+                break;
+            }
+            case History: {
+                if (!command.getClient().requestHistory(command.getField(0), command.getField(1),
+                        command.getField(2), command.getId()))
+                    invalidCommandError(command);
+                break;
+            }
+            case Subscribe: {
+                if (!command.getClient().subscribe(command.getField(0), command.getField(1)))
+                    invalidCommandError(command);
+                break;
+            }
             default: {
-                invalidCommandError(command.getClient());
+                invalidCommandError(command);
                 break;
             }
         }
     }
 
     /**
-     * Prints an error message when an invalid command is processed
-     * @param client the offender
+     * Prints an error message when an invalid command is processed and
+     * tells the client
+     * @param command the invalid command
      */
-    private void invalidCommandError(McscpClient client) {
-        SocketAddress remoteAddress = client.address();
+    private void invalidCommandError(McscpCommand command) {
+        SocketAddress remoteAddress = command.getClient().address();
         mFetcher.logMessage(Level.WARNING, "ERROR: client sent invalid command: " + remoteAddress);
+        command.setReply("[ERROR]:[INVALID]");
     }
 }
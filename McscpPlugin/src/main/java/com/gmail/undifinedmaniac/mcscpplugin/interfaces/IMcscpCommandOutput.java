@@ -0,0 +1,9 @@
+package com.gmail.undifinedmaniac.mcscpplugin.interfaces;
+
+/**
+ * Receives the output of a single console command. It may be called from any
+ * thread and at any time, also long after the command has returned
+ */
+public interface IMcscpCommandOutput {
+    void sendMessage(String message);
+}
@@ -14,6 +14,14 @@ public interface IMcscpDataFetcher {
 
     //Performance data
     float getTps();
+    float getTps1m();
+    float getTps5m();
+    float getTps15m();
+    float getTickIntervalMean();
+    float getTickIntervalP50();
+    float getTickIntervalP95();
+    float getTickIntervalP99();
+    float getTickIntervalMax();
     float getMaxRam();
     float getTotalRam();
     float getFreeRam();
@@ -23,7 +31,7 @@ public interface IMcscpDataFetcher {
     IMcscpPlayerData getPlayerData(String uuid);
 
     //Commands
-    String sendConsoleCmd(String cmd);
+    void sendConsoleCmd(String cmd, IMcscpCommandOutput output);
     void sendChatMessage(String username, String message);
     void broadcastMessage(String message);
     void stop();
@@ -0,0 +1,62 @@
+package com.gmail.undifinedmaniac.mcscpplugin.interfaces;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpHistory;
+import com.gmail.undifinedmaniac.mcscpplugin.network.McscpOutgoingQueue;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+
+import java.util.Set;
+
+/**
+ * An interface for the settings used by the MCSCP server
+ */
+public interface IMcscpServerConfig {
+
+    //Listen server
+    String getAddress();
+    int getPort();
+
+    //Threading
+    boolean useNetworkThread();
+    long getEventBatchInterval();
+
+    //Protocol
+    int getMaxLineLength();
+
+    //Commands
+    long getCommandOutputWindow();
+    int getMaxCommandsInFlight();
+    long getTickBudget();
+
+    //Rate limits
+    float getCommandRate(McscpCommand.CommandType type);
+    int getCommandBurst(McscpCommand.CommandType type);
+    int getMaxRateLimitViolations();
+
+    //Slow clients
+    long getMaxQueueBytes();
+    Set<McscpOutgoingQueue.Policy> getSlowClientPolicies();
+    long getSlowClientGracePeriod();
+
+    //Logs
+    int getLogBufferSize();
+    int getLogBacklogLines();
+    int getLogBacklogBytes();
+    boolean sendLogBacklogOnFlag();
+
+    //History
+    boolean recordHistory();
+    String getHistoryFile();
+    int getHistoryLength(McscpHistory.Resolution resolution);
+
+    //Compression
+    boolean allowCompression();
+    int getCompressionLevel();
+    int getMinCompressedBatch();
+
+    //Tables
+    int getPlayerPollInterval(McscpPlayerTable.Key key);
+    float getServerChangeThreshold(McscpServerTable.Key key);
+    float getPlayerChangeThreshold(McscpPlayerTable.Key key);
+}
@@ -0,0 +1,119 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.util.Arrays;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds MCSCP v2 binary frames
+ *
+ * A frame is a varint body length followed by the body. The body starts with
+ * a frame type byte:
+ *  TEXT           - the UTF-8 text of a v1 message
+ *  SERVER_UPDATE  - varint key ordinal, value
+ *  PLAYER_UPDATE  - varint session id, varint key ordinal, value
+ *  PLAYER_SESSION - varint session id, UUID as two big-endian longs
+ *  PLAYER_SESSION_END - varint session id
+ *  SNAPSHOT       - varint frame count, that many complete frames
+ *  LOG_BACKLOG    - varint frame count, that many TEXT frames with log lines
+ * A value starts with a value type byte:
+ *  STRING  - UTF-8 text up to the end of the frame
+ *  INT     - zigzag varint
+ *  DECIMAL - zigzag varint of the value times 100
+ */
+class McscpBinaryWriter {
+
+    static final byte TEXT = 0x01, SERVER_UPDATE = 0x02, PLAYER_UPDATE = 0x03,
+                      PLAYER_SESSION = 0x04, PLAYER_SESSION_END = 0x05, SNAPSHOT = 0x06,
+                      LOG_BACKLOG = 0x07;
+
+    static final byte STRING = 0x00, INT = 0x01, DECIMAL = 0x02;
+
+    private static final int MAX_HEADER = 5;
+
+    //The body is written after room for the length header
+    private byte[] mBytes = new byte[64];
+    private int mSize = MAX_HEADER;
+
+    McscpBinaryWriter(byte frameType) {
+        writeByte(frameType);
+    }
+
+    McscpBinaryWriter writeByte(int value) {
+        ensureCapacity(1);
+        mBytes[mSize++] = (byte) value;
+        return this;
+    }
+
+    McscpBinaryWriter writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            mBytes[mSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBytes[mSize++] = (byte) value;
+        return this;
+    }
+
+    McscpBinaryWriter writeZigZag(int value) {
+        return writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    McscpBinaryWriter writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8)
+            mBytes[mSize++] = (byte) (value >>> shift);
+        return this;
+    }
+
+    McscpBinaryWriter writeUtf8(String value) {
+        return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    McscpBinaryWriter writeBytes(byte[] bytes) {
+        return writeBytes(bytes, 0, bytes.length);
+    }
+
+    McscpBinaryWriter writeBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, mBytes, mSize, length);
+        mSize += length;
+        return this;
+    }
+
+    McscpBinaryWriter writeBytes(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        ensureCapacity(length);
+        bytes.get(mBytes, mSize, length);
+        mSize += length;
+        return this;
+    }
+
+    /**
+     * Writes the length header in front of the body
+     * @return the finished frame
+     */
+    ByteBuffer toFrame() {
+        int length = mSize - MAX_HEADER;
+
+        int headerSize = 1;
+        for (int value = length >>> 7; value != 0; value >>>= 7)
+            headerSize++;
+
+        int position = MAX_HEADER - headerSize;
+        int value = length;
+        for (int i = position; i < MAX_HEADER - 1; i++) {
+            mBytes[i] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBytes[MAX_HEADER - 1] = (byte) value;
+
+        return ByteBuffer.wrap(mBytes, position, mSize - position).slice();
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mSize + extra > mBytes.length)
+            mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mSize + extra));
+    }
+}
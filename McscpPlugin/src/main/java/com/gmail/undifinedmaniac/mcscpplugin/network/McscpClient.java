@@ -1,24 +1,22 @@
 package com.gmail.undifinedmaniac.mcscpplugin.network;
 
 import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
-import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommandProcessor;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
 import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
 
+import java.util.List;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Queue;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 import java.io.IOException;
 
 import java.net.SocketAddress;
 
-import java.nio.CharBuffer;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.charset.StandardCharsets;
-import java.nio.channels.ClosedChannelException;
 import java.util.logging.Level;
 
 /**
@@ -36,20 +34,54 @@ public class McscpClient {
     private SocketChannel mChannel;
     private SelectionKey mKey;
 
-    private Queue<ByteBuffer> mOutgoingBuffer;
+    private static final int WRITE_BATCH_SIZE = 64;
+
+    private McscpOutgoingQueue mOutgoingBuffer;
+    private ByteBuffer[] mWriteBatch;
+    private boolean mWaitingForWrite;
+    private boolean mFlushScheduled;
+    private boolean mOverQueueCap;
+    private boolean mBackedUp;
     private McscpHandshake mHandshake;
-    private McscpCommand mCommand;
+    private McscpSubscription mSubscription;
+    private List<McscpMessage> mReleased;
+    private boolean mTimerScheduled;
+    private McscpCompressor mCompressor;
+    private int mPlainMessages;
     private HashMap<Flag, Boolean> mFlags;
+    private int mCommandsInFlight;
+    private int mMaxCommandsInFlight;
+    private McscpRateLimiter mRateLimiter;
+
+    private McscpLineReader mReader;
+    private List<String> mLines;
 
     McscpClient(McscpTcpServer server, SocketChannel channel, SelectionKey key) {
         mServer = server;
         mChannel = channel;
         mKey = key;
 
-        mOutgoingBuffer = new LinkedList<>();
-        mHandshake = new McscpHandshake();
-        mCommand = null;
+        IMcscpServerConfig config = server.getConfig();
+        mOutgoingBuffer = new McscpOutgoingQueue(config.getMaxQueueBytes(), config.getSlowClientPolicies(),
+                config.getSlowClientGracePeriod());
+        mWriteBatch = new ByteBuffer[WRITE_BATCH_SIZE];
+        mWaitingForWrite = false;
+        mFlushScheduled = false;
+        mOverQueueCap = false;
+        mBackedUp = false;
+        mHandshake = new McscpHandshake(config.allowCompression());
+        mCompressor = null;
+        mPlainMessages = 0;
         mFlags = new HashMap<>();
+        mSubscription = new McscpSubscription();
+        mReleased = new ArrayList<>();
+        mTimerScheduled = false;
+        mCommandsInFlight = 0;
+        mMaxCommandsInFlight = config.getMaxCommandsInFlight();
+        mRateLimiter = new McscpRateLimiter(config);
+
+        mReader = new McscpLineReader(config.getMaxLineLength());
+        mLines = new ArrayList<>();
     }
 
     public static Flag getFlagType(String flagName) {
@@ -116,6 +148,75 @@ public class McscpClient {
         return mChannel.socket().getRemoteSocketAddress();
     }
 
+    /**
+     * Get the protocol version this client uses
+     * @return the protocol version
+     */
+    public McscpProtocol protocol() {
+        return mHandshake.getProtocol();
+    }
+
+    /**
+     * Check if the connection to this client is still open
+     * @return true if open, otherwise false
+     */
+    public boolean isOpen() {
+        return mChannel.isOpen();
+    }
+
+    /**
+     * Get the outgoing message queue of this client, for its depth and drop counts
+     * @return the queue
+     */
+    public McscpOutgoingQueue outgoingQueue() {
+        return mOutgoingBuffer;
+    }
+
+    /**
+     * Get the compressor of this client, for its byte counters
+     * @return the compressor, or null if the client did not ask for compression
+     */
+    public McscpCompressor compressor() {
+        return mCompressor;
+    }
+
+    /**
+     * Get the table keys this client is subscribed to
+     * @return the subscription
+     */
+    public McscpSubscription subscription() {
+        return mSubscription;
+    }
+
+    /**
+     * Replace the table keys this client is subscribed to
+     * @param serverKeys the list of server keys
+     * @param playerKeys the list of player keys
+     * @return false if a list is invalid
+     */
+    public boolean subscribe(String serverKeys, String playerKeys) {
+        if (!mSubscription.set(serverKeys, playerKeys))
+            return false;
+
+        mServer.updateSubscriptions();
+        return true;
+    }
+
+    /**
+     * Limit the players this client gets messages about
+     * @param type NONE, UUID, WORLD or NAME
+     * @param value the UUIDs, world name or name prefix to follow
+     * @return false if the type is unknown
+     */
+    public boolean filterPlayers(String type, String value) {
+        McscpPlayerFilter filter = McscpPlayerFilter.parse(type, value);
+        if (filter == null)
+            return false;
+
+        mServer.setPlayerFilter(this, filter);
+        return true;
+    }
+
     /**
      * Get the value of a session flag
      * @param flag the flag to check
@@ -135,7 +236,77 @@ public class McscpClient {
      * @param value the value to set
      */
     public void setFlag(Flag flag, boolean value) {
+        boolean enabled = value && !getFlag(flag);
         mFlags.put(flag, value);
+
+        if (enabled && flag == Flag.SendServerLog && mServer.getConfig().sendLogBacklogOnFlag())
+            mServer.sendLogBacklog(this, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Send the recorded values of a server key to this client
+     * @param key the name of the key
+     * @param from the start of the range in epoch seconds
+     * @param to the end of the range in epoch seconds
+     * @param id the request id to put in the reply, or null
+     * @return false if the key or range is invalid or no history is recorded
+     */
+    public boolean requestHistory(String key, String from, String to, String id) {
+        for (McscpServerTable.Key candidate : McscpServerTable.Key.values()) {
+            if (candidate.name().equalsIgnoreCase(key.trim()) && McscpHistory.isRecorded(candidate)) {
+                try {
+                    if (!mServer.queryHistory(this, candidate, Long.parseLong(from.trim()), Long.parseLong(to.trim()), id))
+                        return false;
+
+                    mCommandsInFlight++;
+                    return true;
+                } catch (NumberFormatException error) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Send the timings of the plugin's own work to this client
+     * @param id the request id to put in the reply, or null
+     */
+    public void requestStats(String id) {
+        mCommandsInFlight++;
+        mServer.queryStats(this, id);
+    }
+
+    /**
+     * Sends the answer to a HISTORY or STATS command, called by the network
+     * side once the answer is ready
+     * @param reply the answer
+     */
+    void requestAnswered(McscpMessage reply) {
+        mCommandsInFlight--;
+
+        if (isOpen())
+            send(null, reply);
+    }
+
+    /**
+     * Send the newest lines of the server log to this client
+     * @param lines the number of lines as text
+     * @param id the request id to put in the reply, or null
+     * @return false if the number is invalid
+     */
+    public boolean requestLogBacklog(String lines, String id) {
+        try {
+            int count = Integer.parseInt(lines.trim());
+            if (count < 0)
+                return false;
+
+            mServer.sendLogBacklog(this, count, id);
+            return true;
+        } catch (NumberFormatException error) {
+            return false;
+        }
     }
 
     /**
@@ -160,6 +331,12 @@ public class McscpClient {
         }
 
         mKey.cancel();
+
+        if (mCompressor != null) {
+            mServer.getDataFetcher().logMessage(Level.INFO, "Compressed " + mCompressor.bytesIn() + " bytes to " +
+                    mCompressor.bytesOut() + " bytes for: " + remoteAddress);
+            mCompressor.end();
+        }
     }
 
     /**
@@ -167,34 +344,27 @@ public class McscpClient {
      * processing commands
      */
     public void readEvent() {
-        //Allocate a buffer for reading
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        int numberOfBytesRead = -1;
+        boolean open = false;
+        mLines.clear();
 
         try {
-            //Read from the client
-            numberOfBytesRead = mChannel.read(buffer);
+            //Read everything the client has sent so far
+            open = mReader.read(mChannel, mLines);
         } catch (IOException error) {
             mServer.getDataFetcher().logMessage(Level.SEVERE, "ERROR: IOException while reading data from client: " +
                     address());
         }
 
-        //Drop the client if no bytes were read
-        if (numberOfBytesRead == -1) {
-            mServer.dropClient(this);
-            return;
-        }
-
-        buffer.flip();
-
-        //Decode the UTF-8 input and trim the message
-        CharBuffer charBuffer = StandardCharsets.UTF_8.decode(buffer);
-        String message = charBuffer.toString();
-        message = message.trim();
+        int discardedLines = mReader.takeDiscardedLines();
+        if (discardedLines > 0)
+            mServer.getDataFetcher().logMessage(Level.WARNING, "ERROR: client sent " + discardedLines +
+                    " line(s) over the maximum line length: " + address());
 
-        String lines[] = message.split("\\n");
+        for (String line : mLines) {
+            //Stop once the client has been dropped
+            if (!isOpen())
+                return;
 
-        for (String line : lines) {
             //If the handshake is not finished, continue with it
             if (!mHandshake.complete()) {
                 if (mHandshake.processNewData(line)) {
@@ -203,40 +373,117 @@ public class McscpClient {
                     if (!reply.isEmpty())
                         sendToClient(reply);
 
-                    //Request all the table data once we are finished with the handshake
-                    if (mHandshake.complete())
+                    //Switch to the negotiated protocol and request all the table data
+                    //once we are finished with the handshake
+                    if (mHandshake.complete()) {
+                        mOutgoingBuffer.setProtocol(mHandshake.getProtocol());
+
+                        //Everything queued so far (the reply included) still goes out as it is
+                        if (mHandshake.useCompression()) {
+                            IMcscpServerConfig config = mServer.getConfig();
+                            mCompressor = new McscpCompressor(config.getCompressionLevel(), config.getMinCompressedBatch());
+                            mPlainMessages = mOutgoingBuffer.size();
+                        }
+
                         mServer.requestAllTableData(this);
+                    }
                 } else {
                     mServer.dropClient(this);
+                    return;
                 }
             } else {
-                //Work on command processing - if there is no current command
-                // a new one will be created. Otherwise, new data will be added
-                // to the existing command
-                mCommand = new McscpCommand(this, line);
-
-                mServer.getCommandProcessor().processCommand(mCommand);
+                //The limit is checked on the tag alone, rejected lines are never parsed
+                long now = System.nanoTime();
+                if (!mRateLimiter.tryAcquire(McscpCommand.peekType(line), now)) {
+                    if (mRateLimiter.addViolation(now)) {
+                        mServer.getDataFetcher().logMessage(Level.WARNING, "ERROR: client exceeded the command " +
+                                "rate limits too often and is disconnected: " + address());
+                        mServer.dropClient(this);
+                        return;
+                    }
+
+                    sendToClient(McscpCommand.addId("[ERROR]:[RATELIMIT]", McscpCommand.peekId(line)));
+                    continue;
+                }
 
-                if (mCommand.hasReply()) {
-                    boolean replyEnabled = true;
+                McscpCommand command = new McscpCommand(this, line);
+                McscpCommandProcessor processor = mServer.getCommandProcessor();
 
-                    //Do not send data from a console command if the CmdResponse flag is false
-                    if (mCommand.getType() == McscpCommand.CommandType.Console &&
-                            !getFlag(Flag.CmdResponse))
-                        replyEnabled = false;
+                //Commands that complete later are limited per client, the others are
+                //answered right away so replies may arrive out of order
+                if (processor.completesLater(command) && mCommandsInFlight >= mMaxCommandsInFlight) {
+                    command.setReply("[ERROR]:[BUSY]");
+                    commandFinished(command);
+                    continue;
+                }
 
-                    if (replyEnabled)
-                        sendToClient(mCommand.getReply());
+                //Commands that touch the game state are handed over to the tick, the
+                // reply comes back to the network side once they are done
+                if (processor.requiresTickThread(command)) {
+                    mCommandsInFlight++;
+                    mServer.runClientWork(this, () -> {
+                        long start = System.nanoTime();
+                        try {
+                            processor.processCommand(command);
+                        } catch (RuntimeException error) {
+                            mServer.getDataFetcher().logMessage(Level.SEVERE,
+                                    "ERROR: Exception while running a client command: " + error);
+                            command.setReply("[ERROR]:[FAILED]");
+                        } finally {
+                            //The command always leaves the in-flight count, even if it failed
+                            mServer.getTickStats().record(McscpTickStats.Phase.Commands, System.nanoTime() - start);
+                            mServer.runOnNetworkThread(() -> {
+                                mCommandsInFlight--;
+                                commandFinished(command);
+                            });
+                        }
+                    });
+                } else {
+                    processor.processCommand(command);
+                    commandFinished(command);
                 }
             }
         }
+
+        //Drop the client once the stream has ended
+        if (!open && isOpen())
+            mServer.dropClient(this);
+    }
+
+    /**
+     * Sends the reply for a processed command to the client
+     * @param command the command
+     */
+    private void commandFinished(McscpCommand command) {
+        if (!isOpen() || !command.hasReply())
+            return;
+
+        sendToClient(command.getReply());
     }
 
     /**
      * Handles a write event for the client by trying to write out messages from the
      * outgoing buffer
+     * @return false if the client has to be disconnected, true otherwise
      */
-    public void writeEvent() {
+    public boolean writeEvent() {
+        return flush();
+    }
+
+    /**
+     * Writes as much of the outgoing buffer as the socket accepts. Everything queued
+     * since the last flush goes out in gathering writes, write events are only used
+     * once the socket's buffer is full
+     * @return false if the client has to be disconnected, true otherwise
+     */
+    public boolean flush() {
+        mFlushScheduled = false;
+
+        if (mOutgoingBuffer.isEmpty() && !mWaitingForWrite)
+            return true;
+
+        reportQueueCap();
+
         boolean finished = false;
 
         try {
@@ -247,138 +494,176 @@ public class McscpClient {
                     address());
         }
 
-        //If the outgoing buffer is empty, deregister the socket for write events
-        if (finished) {
-            try {
-                mChannel.register(mServer.getSelector(), SelectionKey.OP_READ);
-            } catch (ClosedChannelException error) {
-                error.printStackTrace();
-            }
+        //Listen for write events while data is left over and stop once the
+        //outgoing buffer is empty
+        if (finished == mWaitingForWrite && mKey.isValid()) {
+            mKey.interestOps(finished ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            mWaitingForWrite = !finished;
         }
-    }
 
-    public void serverTableUpdate(McscpServerTable.Key key, String valueString) {
-        if (mHandshake.complete()) {
-            sendToClient(String.format("[UPDATE]:[KEY:%s]:[VALUE:%s]", key.toString().toUpperCase(), valueString));
-        }
-    }
-    public void playerTableUpdate(String uuid, McscpPlayerTable.Key key, String valueString) {
-        if (mHandshake.complete()) {
-            sendToClient(String.format("[UPDATE]:[KEY:PLAYER:%s]:[UUID:%s]:[VALUE:%s]", key.toString().toUpperCase(), uuid, valueString));
+        //A client waiting for the socket is not flushed again until it becomes
+        //writable, so the server keeps checking its queue every round
+        if (!mBackedUp && isBackedUp()) {
+            mBackedUp = true;
+            mServer.watchBackedUpClient(this);
         }
-    }
 
-    public void playerJoinEvent(String uuid) {
-        if (getFlag(Flag.ReportPlayerJoin) && mHandshake.complete())
-            sendToClient(String.format("[EVENT]:[TYPE:PLAYERJOIN]:[UUID:%s]", uuid));
+        return checkQueueCap();
     }
 
-    public void playerLeaveEvent(String uuid) {
-        if (getFlag(Flag.ReportPlayerLeave) && mHandshake.complete())
-            sendToClient(String.format("[EVENT]:[TYPE:PLAYERLEAVE]:[UUID:%s]", uuid));
+    /**
+     * Checks if the client waits for the socket to accept writes or is over its
+     * outgoing queue cap, called by the network side
+     * @return true while the client is backed up
+     */
+    boolean isBackedUp() {
+        mBackedUp = mWaitingForWrite || mOutgoingBuffer.isCapped();
+        return mBackedUp;
     }
 
-    public void chatEvent(String uuid, String message) {
-        if (getFlag(Flag.ReportChat) && mHandshake.complete())
-            sendToClient(String.format("[EVENT]:[TYPE:CHAT]:[UUID:%s]:[MESSAGE:%s]", uuid, message));
-    }
+    /**
+     * Checks if the client has been over its outgoing queue cap for too long
+     * @return false if the client has to be disconnected, true otherwise
+     */
+    boolean checkQueueCap() {
+        reportQueueCap();
 
-    public void deathEvent(String uuid, String message) {
-        if (getFlag(Flag.ReportPlayerDeath) && mHandshake.complete())
-            sendToClient(String.format("[EVENT]:[TYPE:DEATH]:[UUID:%s]:[MESSAGE:%s]", uuid, message));
-    }
+        if (mOutgoingBuffer.isOverHardLimit()) {
+            mServer.getDataFetcher().logMessage(Level.WARNING, "Disconnecting client whose outgoing queue reached twice its cap: " +
+                    address());
+            return false;
+        }
 
-    public void logEvent(String newData) {
-        if (getFlag(Flag.SendServerLog) && mHandshake.complete())
-            sendToClient(String.format("[LOG]:[DATA:%s]", newData));
+        boolean expired = mOutgoingBuffer.isExpired(System.nanoTime());
+        if (expired)
+            mServer.getDataFetcher().logMessage(Level.WARNING, "Disconnecting client that stayed over its outgoing queue cap: " +
+                    address());
+
+        return !expired;
     }
 
     /**
-     * Sends a string to the client (and ensure it eventually gets there)
-     * @param message the string
+     * Reports a client going over / coming back under its outgoing queue cap
      */
-    private void sendToClient(String message) {
-        boolean success = false;
+    private void reportQueueCap() {
+        boolean overCap = mOutgoingBuffer.isCapped();
 
-        try {
-            //Attempt to send the message to the client
-            success = write(message + "\r\n");
-        } catch (IOException error) {
-            mServer.getDataFetcher().logMessage(Level.SEVERE, "ERROR: IOException while sending data to client: " +
-                    address());
+        if (overCap != mOverQueueCap) {
+            mOverQueueCap = overCap;
+
+            if (overCap)
+                mServer.getDataFetcher().logMessage(Level.WARNING, "Client is not keeping up, outgoing queue is over its cap: " +
+                        address());
+            else
+                mServer.getDataFetcher().logMessage(Level.INFO, "Client caught up, dropped log lines: " +
+                        mOutgoingBuffer.droppedLogs() + ", coalesced updates: " + mOutgoingBuffer.coalescedUpdates() +
+                        ": " + address());
         }
+    }
+
+    /**
+     * Sends a shared message to the client once the handshake is complete
+     * @param flag the session flag that must be enabled, or null to always send
+     * @param message the message
+     */
+    public void send(Flag flag, McscpMessage message) {
+        if (!mHandshake.complete() || (flag != null && !getFlag(flag)) || !message.supports(protocol()))
+            return;
 
-        //If we were not successful, register the socket for read/write and wait
-        //To try and resend the data when the outgoing buffer is processed
-        if (!success) {
-            try {
-                mChannel.register(mServer.getSelector(), SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-            } catch (ClosedChannelException error) {
-                error.printStackTrace();
+        //Updates the client did not subscribe to are dropped, rate limited ones may be held back
+        if (mSubscription.offer(message)) {
+            sendToClient(message);
+        } else {
+            //A newly held update may be due before the ones already waiting
+            long nextDue = mSubscription.nextDue();
+            if (nextDue != Long.MAX_VALUE) {
+                mServer.scheduleTimer(this, nextDue, !mTimerScheduled);
+                mTimerScheduled = true;
             }
         }
     }
 
     /**
-     * Try to resend data that has built up in the outgoing buffer
-     * @return true if the buffer is empty, false if it still has data after the
-     * socket's buffer is full again
-     * @throws IOException
+     * Sends the held back updates that are due
+     * @param now the current time from System.nanoTime()
+     * @return the time the next held back update is due, or Long.MAX_VALUE if
+     * nothing is held back anymore
      */
-    private boolean processOutgoingBuffer() throws IOException {
-        Iterator<ByteBuffer> bufferList = mOutgoingBuffer.iterator();
+    long releaseHeldUpdates(long now) {
+        mSubscription.release(now, mReleased);
 
-        //Try to resend data to the client
-        while (bufferList.hasNext()) {
-            ByteBuffer buffer = bufferList.next();
+        for (int i = 0; i < mReleased.size(); i++)
+            sendToClient(mReleased.get(i));
+        mReleased.clear();
 
-            if (!attemptWrite(buffer))
-                return false;
-            else
-                bufferList.remove();
-        }
-
-        return true;
+        long nextDue = mSubscription.nextDue();
+        mTimerScheduled = nextDue != Long.MAX_VALUE;
+        return nextDue;
     }
 
     /**
-     * Sends a string to the client on failure adds bytes to the outgoing
-     * buffer
-     * @param message the string to send
-     * @return true if the operation was successful, false otherwise
-     * @throws IOException
+     * Sends a string to the client (and ensure it eventually gets there)
+     * @param message the string
      */
-    private boolean write(String message) throws IOException {
-        byte[] bytes = message.getBytes();
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        return write(buffer);
+    private void sendToClient(String message) {
+        sendToClient(new McscpMessage(message));
     }
 
     /**
-     * Sends bytes to the client and on failure adds bytes to the outgoing
-     * buffer
-     * @param bytes the bytes to send
-     * @return true if the operation was successful, false otherwise
-     * @throws IOException
+     * Queues a message for the client, it is written out on the next flush
+     * @param message the message
      */
-    private boolean write(ByteBuffer bytes) throws IOException {
-        if (!attemptWrite(bytes)) {
-            mOutgoingBuffer.add(bytes);
-            return false;
-        }
+    private void sendToClient(McscpMessage message) {
+        mOutgoingBuffer.add(message);
 
-        return true;
+        //While waiting for a write event the selector takes care of the rest
+        if (!mFlushScheduled && !mWaitingForWrite) {
+            mFlushScheduled = true;
+            mServer.scheduleFlush(this);
+        }
     }
 
     /**
-     * Attempts a write to the client
-     * @param bytes
-     * @return true if successful, false otherwise
+     * Try to send data that has built up in the outgoing buffer
+     * @return true if the buffer is empty, false if it still has data after the
+     * socket's buffer is full again
      * @throws IOException
      */
-    private boolean attemptWrite(ByteBuffer bytes) throws IOException {
-        mChannel.write(bytes);
+    private boolean processOutgoingBuffer() throws IOException {
+        while (true) {
+            //Finish the last compressed frame before making a new one
+            if (mCompressor != null && mCompressor.hasOutput()) {
+                ByteBuffer output = mCompressor.output();
+                mChannel.write(output);
+
+                if (output.hasRemaining())
+                    return false;
+            }
 
-        return !bytes.hasRemaining();
+            if (mOutgoingBuffer.isEmpty())
+                return true;
+
+            boolean compress = mCompressor != null && mPlainMessages == 0;
+
+            //Gather the next batch of buffers into a single write / frame
+            int count = mOutgoingBuffer.fill(mWriteBatch, mPlainMessages > 0 ? mPlainMessages : WRITE_BATCH_SIZE);
+            ByteBuffer last = mWriteBatch[count - 1];
+
+            if (compress)
+                mCompressor.compress(mWriteBatch, count);
+            else
+                mChannel.write(mWriteBatch, 0, count);
+
+            Arrays.fill(mWriteBatch, 0, count, null);
+
+            //Remove everything that was written completely
+            int written = mOutgoingBuffer.removeWritten();
+            if (mPlainMessages > 0)
+                mPlainMessages -= written;
+
+            //Anything left over from this batch means the socket's buffer is full
+            if (last.hasRemaining())
+                return false;
+        }
     }
 }
@@ -0,0 +1,147 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the outgoing stream of a client that asked for compression during
+ * the handshake. Every batch of messages becomes a single frame:
+ *  type byte (RAW or DEFLATE), varint payload length, payload
+ * The DEFLATE payloads form one deflate stream for the whole connection and each
+ * of them ends with a sync flush, so the client can inflate every frame as soon
+ * as it arrives. Batches below the minimum size go out as RAW frames
+ */
+public class McscpCompressor {
+
+    static final byte RAW = 0x00, DEFLATE = 0x01;
+
+    private static final int MAX_HEADER = 6;
+    private static final int INITIAL_SIZE = 4096;
+
+    private Deflater mDeflater;
+    private int mMinBatchBytes;
+
+    private byte[] mInput = new byte[INITIAL_SIZE];
+    private byte[] mFrame = new byte[INITIAL_SIZE];
+    private ByteBuffer mOutput = ByteBuffer.allocate(0);
+
+    private long mBytesIn = 0;
+    private long mBytesOut = 0;
+
+    McscpCompressor(int level, int minBatchBytes) {
+        mDeflater = new Deflater(level);
+        mMinBatchBytes = minBatchBytes;
+    }
+
+    /**
+     * Checks if the last frame has not been written completely yet
+     * @return true if there is output left
+     */
+    boolean hasOutput() {
+        return mOutput.hasRemaining();
+    }
+
+    /**
+     * Gets the last frame, the buffer is reused once it has been written
+     * @return the frame
+     */
+    ByteBuffer output() {
+        return mOutput;
+    }
+
+    /**
+     * Turns a batch of encoded messages into the next frame. The buffers are
+     * consumed completely
+     * @param batch the buffers to compress
+     * @param count the number of buffers in the batch
+     */
+    void compress(ByteBuffer[] batch, int count) {
+        //Deflater only takes arrays before Java 11, so gather the batch first
+        int length = 0;
+        for (int i = 0; i < count; i++)
+            length += batch[i].remaining();
+
+        if (mInput.length < length)
+            mInput = new byte[Math.max(length, mInput.length * 2)];
+
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int remaining = batch[i].remaining();
+            batch[i].get(mInput, offset, remaining);
+            offset += remaining;
+        }
+
+        byte type;
+        int size = MAX_HEADER;
+
+        if (length < mMinBatchBytes) {
+            type = RAW;
+            ensureCapacity(length);
+            System.arraycopy(mInput, 0, mFrame, size, length);
+            size += length;
+        } else {
+            type = DEFLATE;
+            mDeflater.setInput(mInput, 0, length);
+
+            //A full output buffer means the deflater may have more to flush
+            while (true) {
+                size += mDeflater.deflate(mFrame, size, mFrame.length - size, Deflater.SYNC_FLUSH);
+                if (size < mFrame.length)
+                    break;
+
+                mFrame = Arrays.copyOf(mFrame, mFrame.length * 2);
+            }
+        }
+
+        //Write the header in front of the payload
+        int payloadLength = size - MAX_HEADER;
+
+        int headerSize = 2;
+        for (int value = payloadLength >>> 7; value != 0; value >>>= 7)
+            headerSize++;
+
+        int start = MAX_HEADER - headerSize;
+        mFrame[start] = type;
+
+        int value = payloadLength;
+        for (int i = start + 1; i < MAX_HEADER - 1; i++) {
+            mFrame[i] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mFrame[MAX_HEADER - 1] = (byte) value;
+
+        mOutput = ByteBuffer.wrap(mFrame, start, size - start);
+        mBytesIn += length;
+        mBytesOut += size - start;
+    }
+
+    /**
+     * Releases the native memory of the deflater
+     */
+    void end() {
+        mDeflater.end();
+    }
+
+    /**
+     * Gets the number of bytes given to the compressor
+     * @return the uncompressed bytes
+     */
+    public long bytesIn() {
+        return mBytesIn;
+    }
+
+    /**
+     * Gets the number of bytes in the frames that came out of the compressor
+     * @return the bytes sent
+     */
+    public long bytesOut() {
+        return mBytesOut;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (MAX_HEADER + extra > mFrame.length)
+            mFrame = Arrays.copyOf(mFrame, Math.max(mFrame.length * 2, MAX_HEADER + extra));
+    }
+}
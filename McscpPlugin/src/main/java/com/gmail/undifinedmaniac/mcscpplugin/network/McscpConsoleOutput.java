@@ -0,0 +1,100 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpCommandOutput;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Collects the output of one console command for the client that sent it.
+ * Output may arrive from any thread and is handed to the network side, where it
+ * is kept until the output window closes and then sent as one reply. Output
+ * that arrives later is sent line by line as it comes in
+ *
+ * With a request id the reply is [CMDRESULT]:[ID:n]:[LINES:k] followed by k
+ * lines of [CMDOUTPUT]:[ID:n]:[DATA:...], late output uses the same CMDOUTPUT
+ * lines. Without an id the lines are joined into a single reply, and late output
+ * is sent as [CMDOUTPUT]:[DATA:...] so it cannot be mistaken for another reply
+ */
+public class McscpConsoleOutput implements IMcscpCommandOutput {
+
+    private McscpClient mClient;
+    private McscpTcpServer mServer;
+    private String mId;
+
+    //Only touched by the network side
+    private List<String> mLines = new ArrayList<>();
+    private boolean mWindowOpen = true;
+    private long mWindowEnd = Long.MAX_VALUE;
+
+    /**
+     * @param client the client that sent the command
+     * @param id the request id of the command, or null
+     */
+    public McscpConsoleOutput(McscpClient client, String id) {
+        mClient = client;
+        mServer = client.server();
+        mId = id;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        mServer.runOnNetworkThread(() -> addLine(message));
+    }
+
+    /**
+     * Starts the output window, called by the tick once the command has been
+     * dispatched. Output the command sent meanwhile is already queued ahead of it
+     */
+    public void dispatched() {
+        mServer.runOnNetworkThread(() -> {
+            mWindowEnd = System.nanoTime() + mServer.getConfig().getCommandOutputWindow() * 1000000L;
+            mServer.scheduleOutputWindow(this);
+        });
+    }
+
+    /**
+     * Gets the time the output window closes
+     * @return the time from System.nanoTime()
+     */
+    long windowEnd() {
+        return mWindowEnd;
+    }
+
+    /**
+     * Sends everything collected so far as the reply to the command
+     */
+    void closeWindow() {
+        mWindowOpen = false;
+
+        StringBuilder reply = new StringBuilder();
+        if (mId == null) {
+            for (String line : mLines)
+                reply.append(line);
+        } else {
+            reply.append(String.format("[CMDRESULT]:[ID:%s]:[LINES:%d]", mId, mLines.size()));
+            for (String line : mLines)
+                reply.append("\r\n").append(outputLine(line));
+        }
+
+        mLines = null;
+        send(reply.toString());
+    }
+
+    private void addLine(String line) {
+        if (mWindowOpen)
+            mLines.add(line);
+        else
+            send(outputLine(line));
+    }
+
+    private String outputLine(String line) {
+        return McscpCommand.addId("[CMDOUTPUT]:[DATA:" + line + "]", mId);
+    }
+
+    private void send(String message) {
+        if (mClient.isOpen())
+            mClient.send(McscpClient.Flag.CmdResponse, new McscpMessage(message));
+    }
+}
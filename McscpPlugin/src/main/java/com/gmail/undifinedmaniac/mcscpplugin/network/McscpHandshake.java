@@ -5,14 +5,24 @@ import java.util.regex.Pattern;
 
 /**
  * Manages the initial handshake between the server and an MCSCP client
+ *
+ * The server always offers v1 so that existing clients keep working, a client
+ * that understands the binary protocol answers with v2 instead. A client can ask
+ * for compression in its ready message, the complete message tells it whether
+ * compression is on
  */
 public class McscpHandshake {
 
-    private static final String PROTOCOL = "MCSCPV1.0.0";
-
     private static final Pattern PROTOCOL_PATTERN = Pattern.compile("\\[HANDSHAKE]:\\[PROTOCOL:(.*)]");
 
+    private static final String READY = "[HANDSHAKE]:[READY]";
+    private static final String COMPLETE = "[HANDSHAKE]:[COMPLETE]";
+    private static final String COMPRESSION = ":[COMPRESSION:DEFLATE]";
+
     private State mState = State.Idle;
+    private McscpProtocol mProtocol = McscpProtocol.V1;
+    private boolean mAllowCompression;
+    private boolean mCompression = false;
 
     private enum State {
         Idle, SentProtocol,
@@ -20,8 +30,8 @@ public class McscpHandshake {
         Failed;
     }
 
-    McscpHandshake() {
-
+    McscpHandshake(boolean allowCompression) {
+        mAllowCompression = allowCompression;
     }
 
     /**
@@ -31,7 +41,7 @@ public class McscpHandshake {
     public String start() {
         if (mState == State.Idle) {
             mState = State.SentProtocol;
-            return String.format("[HANDSHAKE]:[PROTOCOL:%s]", PROTOCOL);
+            return String.format("[HANDSHAKE]:[PROTOCOL:%s]", McscpProtocol.V1.getName());
         }
         return "";
     }
@@ -41,8 +51,9 @@ public class McscpHandshake {
             case SentProtocol:
                 Matcher matcher = PROTOCOL_PATTERN.matcher(data);
                 if (matcher.find()) {
-                    String clientProtocol = matcher.group(1);
-                    if (clientProtocol.equals(PROTOCOL)) {
+                    McscpProtocol clientProtocol = McscpProtocol.fromName(matcher.group(1));
+                    if (clientProtocol != null) {
+                        mProtocol = clientProtocol;
                         mState = State.VerifiedClientProtocol;
                         return true;
                     } else {
@@ -53,7 +64,12 @@ public class McscpHandshake {
                 break;
             case VerifiedClientProtocol:
                 mState = State.Complete;
-                return data.toUpperCase().equals("[HANDSHAKE]:[READY]");
+                String ready = data.toUpperCase();
+                if (ready.equals(READY + COMPRESSION)) {
+                    mCompression = mAllowCompression;
+                    return true;
+                }
+                return ready.equals(READY);
         }
         return false;
     }
@@ -61,13 +77,29 @@ public class McscpHandshake {
     public String getNextMessage() {
         switch(mState) {
             case VerifiedClientProtocol:
-                return "[HANDSHAKE]:[READY]";
+                return READY;
             case Complete:
-                return "[HANDSHAKE]:[COMPLETE]";
+                return mCompression ? COMPLETE + COMPRESSION : COMPLETE;
         }
         return "";
     }
 
+    /**
+     * Gets the protocol version the client picked
+     * @return the protocol version
+     */
+    public McscpProtocol getProtocol() {
+        return mProtocol;
+    }
+
+    /**
+     * Checks if the client asked for compression and the server allows it
+     * @return true if the stream after the handshake is compressed
+     */
+    public boolean useCompression() {
+        return mCompression;
+    }
+
     /**
      * Checks if the handshake is finished
      * @return true if finished, otherwise false
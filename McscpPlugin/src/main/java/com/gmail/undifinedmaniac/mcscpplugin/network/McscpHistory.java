@@ -0,0 +1,334 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpTableBase;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Records the numeric server keys into a fixed size memory-mapped file, as raw
+ * samples every second and as minimum / maximum / average per minute and per
+ * hour. Every resolution is a ring of slots indexed by time, so a slot is found
+ * without searching and old slots are simply overwritten
+ *
+ * The file and the running aggregates are only touched by the history thread.
+ * The tick hands samples over and clients' queries are answered from there
+ *
+ * File layout: magic, version, key count and the slot count of every resolution
+ * as ints, followed by the slots of each resolution. A slot is the start of its
+ * period in epoch seconds as a long and its sample count as an int, then min, max
+ * and average of every key as floats. The count lets a restart continue the
+ * current periods instead of starting them over
+ */
+public class McscpHistory {
+
+    public enum Resolution {
+        Second(1), Minute(60), Hour(3600);
+
+        private final int mSeconds;
+
+        Resolution(int seconds) {
+            mSeconds = seconds;
+        }
+
+        public int getSeconds() {
+            return mSeconds;
+        }
+    }
+
+    private static final int MAGIC = 0x4D435348, VERSION = 2;
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+    private static final McscpServerTable.Key[] KEYS = recordedKeys();
+
+    private static final int HEADER_SIZE = 12 + 4 * RESOLUTIONS.length;
+    private static final int SLOT_HEADER_SIZE = 12;
+    private static final int SLOT_SIZE = SLOT_HEADER_SIZE + 12 * KEYS.length;
+
+    private McscpTcpServer mServer;
+    private IMcscpDataFetcher mFetcher;
+    private String mPath;
+    private int[] mLengths = new int[RESOLUTIONS.length];
+    private int[] mOffsets = new int[RESOLUTIONS.length];
+
+    private RandomAccessFile mFile = null;
+    private MappedByteBuffer mSlots = null;
+    private BlockingQueue<Runnable> mTasks = new LinkedBlockingQueue<>();
+    private Thread mThread = null;
+    private volatile boolean mRunning = false;
+
+    //The aggregate of the current period of every resolution
+    private long[] mPeriods = new long[RESOLUTIONS.length];
+    private float[][] mMin = new float[RESOLUTIONS.length][KEYS.length];
+    private float[][] mMax = new float[RESOLUTIONS.length][KEYS.length];
+    private double[][] mSum = new double[RESOLUTIONS.length][KEYS.length];
+    private int[] mCounts = new int[RESOLUTIONS.length];
+
+    /**
+     * @param server the server to answer queries through
+     * @param path the history file
+     */
+    public McscpHistory(McscpTcpServer server, String path) {
+        mServer = server;
+        mFetcher = server.getDataFetcher();
+        mPath = path;
+
+        int offset = HEADER_SIZE;
+        for (Resolution resolution : RESOLUTIONS) {
+            mLengths[resolution.ordinal()] = Math.max(1, server.getConfig().getHistoryLength(resolution));
+            mOffsets[resolution.ordinal()] = offset;
+            offset += mLengths[resolution.ordinal()] * SLOT_SIZE;
+        }
+
+        Arrays.fill(mPeriods, -1);
+    }
+
+    /**
+     * Checks if a server key is recorded
+     * @param key the key
+     * @return true for numeric keys
+     */
+    public static boolean isRecorded(McscpServerTable.Key key) {
+        return key.getValueType() != McscpTableBase.ValueType.Text;
+    }
+
+    /**
+     * Maps the history file and starts the history thread. A file that was
+     * written with other settings is cleared
+     * @throws IOException if the file cannot be mapped
+     */
+    public void start() throws IOException {
+        int size = mOffsets[RESOLUTIONS.length - 1] + mLengths[RESOLUTIONS.length - 1] * SLOT_SIZE;
+
+        mFile = new RandomAccessFile(mPath, "rw");
+        mFile.setLength(size);
+        mSlots = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (!hasValidHeader()) {
+            for (int i = 0; i < size; i++)
+                mSlots.put(i, (byte) 0);
+
+            mSlots.putInt(0, MAGIC);
+            mSlots.putInt(4, VERSION);
+            mSlots.putInt(8, KEYS.length);
+            for (int i = 0; i < RESOLUTIONS.length; i++)
+                mSlots.putInt(12 + 4 * i, mLengths[i]);
+        }
+
+        mRunning = true;
+        mThread = new Thread(this::runHistoryLoop, "MCSCP History");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Stops the history thread and writes the file out
+     */
+    public void stop() {
+        if (mThread == null)
+            return;
+
+        mRunning = false;
+        mTasks.add(() -> {});
+
+        try {
+            mThread.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+
+        mThread = null;
+        mSlots.force();
+
+        try {
+            mFile.close();
+        } catch (IOException error) {
+            //The mapping stays valid until it is collected
+        }
+    }
+
+    /**
+     * Hands the current values of the server table to the history thread,
+     * called by the tick
+     * @param time the time of the sample in epoch seconds
+     * @param table the server table
+     */
+    public void record(long time, McscpServerTable table) {
+        float[] values = new float[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++)
+            values[i] = table.getNumericValue(KEYS[i]);
+
+        mTasks.add(() -> write(time, values));
+    }
+
+    /**
+     * Answers a HISTORY command on the history thread. The reply is a header
+     * line followed by one line per period, using the finest resolution that
+     * still holds the start of the range
+     * @param client the client to answer
+     * @param key the key
+     * @param from the start of the range in epoch seconds
+     * @param to the end of the range in epoch seconds
+     * @param id the request id to put in the reply, or null
+     */
+    void query(McscpClient client, McscpServerTable.Key key, long from, long to, String id) {
+        mTasks.add(() -> {
+            McscpMessage reply = read(key, from, to, id);
+            mServer.runOnNetworkThread(() -> client.requestAnswered(reply));
+        });
+    }
+
+    private void runHistoryLoop() {
+        while (mRunning) {
+            try {
+                mTasks.take().run();
+            } catch (InterruptedException error) {
+                return;
+            } catch (RuntimeException error) {
+                mFetcher.logMessage(Level.SEVERE, "ERROR: Exception in the history thread: " + error);
+            }
+        }
+    }
+
+    private static McscpServerTable.Key[] recordedKeys() {
+        List<McscpServerTable.Key> keys = new ArrayList<>();
+        for (McscpServerTable.Key key : McscpServerTable.Key.values()) {
+            if (isRecorded(key))
+                keys.add(key);
+        }
+
+        return keys.toArray(new McscpServerTable.Key[0]);
+    }
+
+    private boolean hasValidHeader() {
+        if (mSlots.getInt(0) != MAGIC || mSlots.getInt(4) != VERSION || mSlots.getInt(8) != KEYS.length)
+            return false;
+
+        for (int i = 0; i < RESOLUTIONS.length; i++) {
+            if (mSlots.getInt(12 + 4 * i) != mLengths[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a sample to the period it falls in at every resolution
+     * @param time the time of the sample in epoch seconds
+     * @param values the value of every recorded key
+     */
+    private void write(long time, float[] values) {
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            long period = time / RESOLUTIONS[r].getSeconds();
+
+            long start = period * RESOLUTIONS[r].getSeconds();
+            int slot = slotOffset(r, period);
+
+            if (period != mPeriods[r]) {
+                mPeriods[r] = period;
+
+                //The slot already holds this period if the plugin was restarted during it
+                if (mSlots.getLong(slot) == start)
+                    loadPeriod(r, slot);
+                else
+                    startPeriod(r);
+            }
+
+            mCounts[r]++;
+            for (int i = 0; i < KEYS.length; i++) {
+                mMin[r][i] = Math.min(mMin[r][i], values[i]);
+                mMax[r][i] = Math.max(mMax[r][i], values[i]);
+                mSum[r][i] += values[i];
+
+                int position = slot + SLOT_HEADER_SIZE + 12 * i;
+                mSlots.putFloat(position, mMin[r][i]);
+                mSlots.putFloat(position + 4, mMax[r][i]);
+                mSlots.putFloat(position + 8, (float) (mSum[r][i] / mCounts[r]));
+            }
+
+            mSlots.putInt(slot + 8, mCounts[r]);
+            mSlots.putLong(slot, start);
+        }
+    }
+
+    /**
+     * Starts an empty aggregate for a resolution
+     * @param r the resolution index
+     */
+    private void startPeriod(int r) {
+        mCounts[r] = 0;
+        Arrays.fill(mMin[r], Float.MAX_VALUE);
+        Arrays.fill(mMax[r], -Float.MAX_VALUE);
+        Arrays.fill(mSum[r], 0);
+    }
+
+    /**
+     * Continues the aggregate that is stored in a slot
+     * @param r the resolution index
+     * @param slot the offset of the slot
+     */
+    private void loadPeriod(int r, int slot) {
+        mCounts[r] = mSlots.getInt(slot + 8);
+        for (int i = 0; i < KEYS.length; i++) {
+            int position = slot + SLOT_HEADER_SIZE + 12 * i;
+            mMin[r][i] = mSlots.getFloat(position);
+            mMax[r][i] = mSlots.getFloat(position + 4);
+            mSum[r][i] = (double) mSlots.getFloat(position + 8) * mCounts[r];
+        }
+    }
+
+    /**
+     * Reads a range of one key
+     * @param key the key
+     * @param from the start of the range in epoch seconds
+     * @param to the end of the range in epoch seconds
+     * @param id the request id to put in the reply, or null
+     * @return the reply for the client
+     */
+    private McscpMessage read(McscpServerTable.Key key, long from, long to, String id) {
+        int keyIndex = Arrays.asList(KEYS).indexOf(key);
+        long now = System.currentTimeMillis() / 1000;
+
+        int r = 0;
+        while (r < RESOLUTIONS.length - 1 &&
+                from < (now / RESOLUTIONS[r].getSeconds() - mLengths[r] + 1) * RESOLUTIONS[r].getSeconds())
+            r++;
+
+        int seconds = RESOLUTIONS[r].getSeconds();
+        long first = Math.max(from / seconds, now / seconds - mLengths[r] + 1);
+        long last = Math.min(to, now) / seconds;
+
+        StringBuilder lines = new StringBuilder();
+        int points = 0;
+        for (long period = first; period <= last; period++) {
+            int slot = slotOffset(r, period);
+            if (mSlots.getLong(slot) != period * seconds)
+                continue;
+
+            int position = slot + SLOT_HEADER_SIZE + 12 * keyIndex;
+            lines.append(String.format("\r\n[POINT]:[TIME:%d]:[MIN:%s]:[MAX:%s]:[AVG:%s]", period * seconds,
+                    mSlots.getFloat(position), mSlots.getFloat(position + 4), mSlots.getFloat(position + 8)));
+            points++;
+        }
+
+        lines.insert(0, McscpCommand.addId(String.format("[HISTORY]:[KEY:%s]:[RESOLUTION:%d]:[POINTS:%d]",
+                key.toString().toUpperCase(), seconds, points), id));
+        return new McscpMessage(lines.toString());
+    }
+
+    private int slotOffset(int resolution, long period) {
+        return mOffsets[resolution] + (int) (period % mLengths[resolution]) * SLOT_SIZE;
+    }
+}
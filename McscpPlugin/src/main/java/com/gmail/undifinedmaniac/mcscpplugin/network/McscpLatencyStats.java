@@ -0,0 +1,127 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.util.Arrays;
+
+/**
+ * Collects durations in nanoseconds. Besides the count, mean and maximum every
+ * duration is counted in a bucket, every power of two is split into four
+ * buckets, which is enough to estimate percentiles without keeping the samples.
+ * Recording never allocates. Not thread safe, every instance belongs to one side
+ */
+public class McscpLatencyStats {
+
+    private static final int SUB_BITS = 2;
+
+    private long[] mBuckets = new long[64 << SUB_BITS];
+    private long mCount = 0;
+    private long mTotal = 0;
+    private long mMax = 0;
+
+    /**
+     * Adds a duration
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        mBuckets[bucket(nanos)]++;
+        mCount++;
+        mTotal += nanos;
+        mMax = Math.max(mMax, nanos);
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets the mean duration
+     * @return the mean in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMean() {
+        return mCount == 0 ? 0 : mTotal / mCount;
+    }
+
+    /**
+     * Gets the longest duration
+     * @return the maximum in nanoseconds
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * Estimates a percentile, the result is the upper bound of the bucket the
+     * percentile falls in so it is at most 25% above the real value
+     * @param percentile the percentile from 0 to 100
+     * @return the estimate in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(mCount * percentile / 100.0);
+
+        long seen = 0;
+        for (int i = 0; i < mBuckets.length; i++) {
+            seen += mBuckets[i];
+            if (seen >= rank && seen != 0)
+                return Math.min(mMax, upperBound(i));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Copies the stats so another thread can read them
+     * @return the copy
+     */
+    public McscpLatencyStats copy() {
+        McscpLatencyStats copy = new McscpLatencyStats();
+        System.arraycopy(mBuckets, 0, copy.mBuckets, 0, mBuckets.length);
+        copy.mCount = mCount;
+        copy.mTotal = mTotal;
+        copy.mMax = mMax;
+        return copy;
+    }
+
+    /**
+     * Forgets every duration
+     */
+    public void reset() {
+        Arrays.fill(mBuckets, 0);
+        mCount = 0;
+        mTotal = 0;
+        mMax = 0;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < (1 << SUB_BITS))
+            return (int) nanos;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < (1 << SUB_BITS))
+            return bucket;
+
+        int shift = (bucket >> SUB_BITS) - 1;
+        long lower = (long) ((1 << SUB_BITS) + (bucket & ((1 << SUB_BITS) - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Formats the stats in microseconds
+     * @return the count, mean, p99 and maximum
+     */
+    @Override
+    public String toString() {
+        return String.format("count %d, mean %dus, p99 %dus, max %dus", mCount, getMean() / 1000,
+                getPercentile(99) / 1000, mMax / 1000);
+    }
+}
@@ -0,0 +1,112 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.io.IOException;
+
+import java.util.List;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the incoming byte stream of a client into lines. The buffers are reused
+ * for the whole connection, partial lines and partial UTF-8 sequences are carried
+ * over to the next read
+ */
+class McscpLineReader {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private ByteBuffer mByteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private CharBuffer mCharBuffer = CharBuffer.allocate(BUFFER_SIZE);
+    private CharsetDecoder mDecoder;
+    private StringBuilder mLine = new StringBuilder();
+
+    private int mMaxLineLength;
+    private boolean mDiscarding = false;
+    private int mDiscardedLines = 0;
+
+    McscpLineReader(int maxLineLength) {
+        mMaxLineLength = maxLineLength;
+        mDecoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Reads from the channel until it would block and collects every complete line
+     * @param channel the channel to read from
+     * @param lines receives the complete lines (without line endings)
+     * @return false if the end of the stream was reached, true otherwise
+     * @throws IOException
+     */
+    boolean read(ReadableByteChannel channel, List<String> lines) throws IOException {
+        while (true) {
+            int numberOfBytesRead = channel.read(mByteBuffer);
+
+            if (numberOfBytesRead == -1)
+                return false;
+            if (numberOfBytesRead == 0)
+                return true;
+
+            mByteBuffer.flip();
+
+            //Decode as much as possible, an incomplete sequence stays in the byte buffer
+            CoderResult result;
+            do {
+                result = mDecoder.decode(mByteBuffer, mCharBuffer, false);
+                mCharBuffer.flip();
+                splitLines(lines);
+                mCharBuffer.clear();
+            } while (result.isOverflow());
+
+            mByteBuffer.compact();
+        }
+    }
+
+    /**
+     * Takes and resets the number of lines that were dropped for being too long
+     * @return the number of dropped lines
+     */
+    int takeDiscardedLines() {
+        int discarded = mDiscardedLines;
+        mDiscardedLines = 0;
+        return discarded;
+    }
+
+    /**
+     * Moves the decoded characters into the current line, finishing a line on
+     * every newline
+     * @param lines receives the complete lines
+     */
+    private void splitLines(List<String> lines) {
+        while (mCharBuffer.hasRemaining()) {
+            char c = mCharBuffer.get();
+
+            if (c == '\n') {
+                if (mDiscarding) {
+                    mDiscarding = false;
+                    mDiscardedLines++;
+                } else {
+                    String line = mLine.toString().trim();
+                    if (!line.isEmpty())
+                        lines.add(line);
+                }
+
+                mLine.setLength(0);
+            } else if (!mDiscarding) {
+                if (mLine.length() < mMaxLineLength) {
+                    mLine.append(c);
+                } else {
+                    //Drop everything up to the next newline
+                    mDiscarding = true;
+                    mLine.setLength(0);
+                }
+            }
+        }
+    }
+}
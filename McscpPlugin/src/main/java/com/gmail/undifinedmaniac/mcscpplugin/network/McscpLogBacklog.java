@@ -0,0 +1,141 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the newest log lines for clients that connect later. The lines are
+ * stored as UTF-8 in one preallocated byte array that is used as a ring, the
+ * oldest lines are forgotten once either the line or the byte limit is reached.
+ * Only touched by the network side
+ */
+class McscpLogBacklog {
+
+    private static final byte[] PREFIX = "[LOG]:[DATA:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWLINE = "\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private byte[] mBytes;
+    private int[] mStarts;
+    private int[] mLengths;
+
+    private int mFirstLine = 0;
+    private int mLineCount = 0;
+    private int mWritePosition = 0;
+    private int mUsedBytes = 0;
+
+    /**
+     * @param maxLines the most lines to keep
+     * @param maxBytes the most bytes of line text to keep
+     */
+    McscpLogBacklog(int maxLines, int maxBytes) {
+        mBytes = new byte[Math.max(0, maxBytes)];
+        mStarts = new int[Math.max(0, maxLines)];
+        mLengths = new int[mStarts.length];
+    }
+
+    /**
+     * Adds a line, lines longer than the whole backlog are not kept
+     * @param line the formatted log line
+     */
+    void add(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (mStarts.length == 0 || mBytes.length == 0 || bytes.length > mBytes.length)
+            return;
+
+        while (mLineCount == mStarts.length || mUsedBytes + bytes.length > mBytes.length)
+            removeOldest();
+
+        int firstPart = Math.min(bytes.length, mBytes.length - mWritePosition);
+        System.arraycopy(bytes, 0, mBytes, mWritePosition, firstPart);
+        System.arraycopy(bytes, firstPart, mBytes, 0, bytes.length - firstPart);
+
+        int slot = (mFirstLine + mLineCount) % mStarts.length;
+        mStarts[slot] = mWritePosition;
+        mLengths[slot] = bytes.length;
+
+        mWritePosition = (mWritePosition + bytes.length) % mBytes.length;
+        mUsedBytes += bytes.length;
+        mLineCount++;
+    }
+
+    /**
+     * Encodes the newest lines for a client. v1 clients get a header line
+     * followed by the log lines, v2 clients get a single frame that contains a
+     * TEXT frame for every line. With a request id v2 clients also get the
+     * header line as a TEXT frame in front of it
+     * @param lines the most lines to send
+     * @param protocol the protocol of the client
+     * @param id the request id, or null
+     * @return the message
+     */
+    McscpMessage toMessage(int lines, McscpProtocol protocol, String id) {
+        int count = Math.min(Math.max(0, lines), mLineCount);
+        int skip = mLineCount - count;
+        String header = McscpCommand.addId(String.format("[LOGBACKLOG]:[LINES:%d]", count), id);
+
+        if (protocol == McscpProtocol.V2) {
+            McscpBinaryWriter writer = new McscpBinaryWriter(McscpBinaryWriter.LOG_BACKLOG);
+            writer.writeVarInt(count);
+
+            for (int i = skip; i < mLineCount; i++) {
+                int slot = (mFirstLine + i) % mStarts.length;
+                writer.writeVarInt(1 + PREFIX.length + mLengths[slot] + SUFFIX.length)
+                      .writeByte(McscpBinaryWriter.TEXT)
+                      .writeBytes(PREFIX);
+                writeLine(writer, slot);
+                writer.writeBytes(SUFFIX);
+            }
+
+            ByteBuffer frame = writer.toFrame();
+            if (id != null) {
+                ByteBuffer headerFrame = new McscpBinaryWriter(McscpBinaryWriter.TEXT).writeUtf8(header).toFrame();
+                ByteBuffer frames = ByteBuffer.allocate(headerFrame.remaining() + frame.remaining());
+                frames.put(headerFrame).put(frame).flip();
+                frame = frames;
+            }
+
+            return McscpMessage.logBacklog(count, protocol, frame);
+        }
+
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        int size = headerBytes.length + NEWLINE.length;
+        for (int i = skip; i < mLineCount; i++)
+            size += PREFIX.length + mLengths[(mFirstLine + i) % mStarts.length] + SUFFIX.length + NEWLINE.length;
+
+        ByteBuffer text = ByteBuffer.allocate(size);
+        text.put(headerBytes).put(NEWLINE);
+        for (int i = skip; i < mLineCount; i++) {
+            int slot = (mFirstLine + i) % mStarts.length;
+            int firstPart = Math.min(mLengths[slot], mBytes.length - mStarts[slot]);
+
+            text.put(PREFIX)
+                .put(mBytes, mStarts[slot], firstPart)
+                .put(mBytes, 0, mLengths[slot] - firstPart)
+                .put(SUFFIX)
+                .put(NEWLINE);
+        }
+
+        text.flip();
+        return McscpMessage.logBacklog(count, protocol, text);
+    }
+
+    /**
+     * Copies a stored line into a frame, the line may wrap around the end of the array
+     * @param writer the frame
+     * @param slot the slot of the line
+     */
+    private void writeLine(McscpBinaryWriter writer, int slot) {
+        int firstPart = Math.min(mLengths[slot], mBytes.length - mStarts[slot]);
+        writer.writeBytes(mBytes, mStarts[slot], firstPart);
+        writer.writeBytes(mBytes, 0, mLengths[slot] - firstPart);
+    }
+
+    private void removeOldest() {
+        mUsedBytes -= mLengths[mFirstLine];
+        mFirstLine = (mFirstLine + 1) % mStarts.length;
+        mLineCount--;
+    }
+}
@@ -0,0 +1,115 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded ring of raw log events. Any thread may add events without blocking,
+ * only the network side takes them out. Events that do not fit are counted
+ * instead of queued
+ *
+ * Every slot has a sequence number: a producer claims a slot by moving the tail
+ * forward when the slot's sequence matches it, and publishes the slot by setting
+ * the sequence one past it. The consumer frees the slot by moving the sequence a
+ * whole lap ahead
+ */
+public class McscpLogRing {
+
+    /**
+     * Receives the events taken out of the ring
+     */
+    interface Handler {
+        void log(long time, String level, String message);
+    }
+
+    private final int mMask;
+    private final AtomicLongArray mSequences;
+    private final long[] mTimes;
+    private final String[] mLevels;
+    private final String[] mMessages;
+
+    private final AtomicLong mTail = new AtomicLong();
+    private final LongAdder mDropped = new LongAdder();
+    private long mHead = 0;
+
+    /**
+     * @param capacity the number of events the ring holds, rounded up to a power of two
+     */
+    McscpLogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+        mMask = size - 1;
+        mSequences = new AtomicLongArray(size);
+        mTimes = new long[size];
+        mLevels = new String[size];
+        mMessages = new String[size];
+
+        for (int i = 0; i < size; i++)
+            mSequences.set(i, i);
+    }
+
+    /**
+     * Adds an event, may be called from any thread
+     * @param time the time of the event in milliseconds
+     * @param level the log level
+     * @param message the message
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean add(long time, String level, String message) {
+        long tail;
+        int index;
+
+        while (true) {
+            tail = mTail.get();
+            index = (int) (tail & mMask);
+            long difference = mSequences.get(index) - tail;
+
+            if (difference == 0) {
+                if (mTail.compareAndSet(tail, tail + 1))
+                    break;
+            } else if (difference < 0) {
+                //The consumer has not freed this slot yet
+                mDropped.increment();
+                return false;
+            }
+        }
+
+        mTimes[index] = time;
+        mLevels[index] = level;
+        mMessages[index] = message;
+        mSequences.lazySet(index, tail + 1);
+        return true;
+    }
+
+    /**
+     * Takes every published event out of the ring, only called by the network side
+     * @param handler receives the events in order
+     * @return the number of events taken
+     */
+    int drain(Handler handler) {
+        int count = 0;
+
+        while (true) {
+            int index = (int) (mHead & mMask);
+            if (mSequences.get(index) != mHead + 1)
+                return count;
+
+            String message = mMessages[index];
+            mMessages[index] = null;
+            handler.log(mTimes[index], mLevels[index], message);
+
+            mSequences.lazySet(index, mHead + mMask + 1);
+            mHead++;
+            count++;
+        }
+    }
+
+    /**
+     * Takes and resets the number of events dropped because the ring was full
+     * @return the number of dropped events
+     */
+    long takeDropped() {
+        return mDropped.sumThenReset();
+    }
+}
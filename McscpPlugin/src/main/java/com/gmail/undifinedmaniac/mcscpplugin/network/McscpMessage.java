@@ -0,0 +1,317 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpTableValue;
+
+import java.util.List;
+import java.util.UUID;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message for MCSCP clients. The message is encoded at most once per protocol
+ * version and the encoded bytes are shared by every client that it is sent to
+ */
+public class McscpMessage {
+
+    public enum Type {
+        Update, Log, Other
+    }
+
+    private Type mType;
+    private Object mUpdateKey;
+    private String mText;
+    private ByteBuffer mEncoded = null;
+    private ByteBuffer mBinary = null;
+
+    //Fields for the binary encoding
+    private byte mFrameType = McscpBinaryWriter.TEXT;
+    private String mUuid = null;
+    private int mSessionId = 0;
+    private Enum<?> mKey = null;
+    private int mKeyOrdinal = 0;
+    private McscpTableValue mValue = null;
+    private List<McscpMessage> mParts = null;
+
+    public McscpMessage(String text) {
+        this(Type.Other, null, text);
+    }
+
+    private McscpMessage(Type type, Object updateKey, String text) {
+        mType = type;
+        mUpdateKey = updateKey;
+        mText = text;
+    }
+
+    /**
+     * Creates an update for the server table, the text is only built for v1 clients
+     * @param key the key
+     * @param value the new value
+     */
+    public static McscpMessage serverTableUpdate(McscpServerTable.Key key, McscpTableValue value) {
+        McscpMessage message = new McscpMessage(Type.Update, key, null);
+        message.mFrameType = McscpBinaryWriter.SERVER_UPDATE;
+        message.mKey = key;
+        message.mKeyOrdinal = key.ordinal();
+        message.mValue = value;
+        return message;
+    }
+
+    /**
+     * Creates an update for a player table, the text is only built for v1 clients
+     * @param uuid the uuid of the player
+     * @param sessionId the session id of the player
+     * @param key the key
+     * @param value the new value
+     */
+    public static McscpMessage playerTableUpdate(String uuid, int sessionId, McscpPlayerTable.Key key, McscpTableValue value) {
+        McscpMessage message = new McscpMessage(Type.Update, uuid + ":" + key.ordinal(), null);
+        message.mFrameType = McscpBinaryWriter.PLAYER_UPDATE;
+        message.mUuid = uuid;
+        message.mSessionId = sessionId;
+        message.mKey = key;
+        message.mKeyOrdinal = key.ordinal();
+        message.mValue = value;
+        return message;
+    }
+
+    /**
+     * Assigns a session id to a player, only sent to v2 clients
+     */
+    public static McscpMessage playerSession(String uuid, int sessionId) {
+        McscpMessage message = new McscpMessage(null);
+        message.mFrameType = McscpBinaryWriter.PLAYER_SESSION;
+        message.mUuid = uuid;
+        message.mSessionId = sessionId;
+        return message;
+    }
+
+    /**
+     * Releases the session id of a player, only sent to v2 clients
+     */
+    public static McscpMessage playerSessionEnd(int sessionId) {
+        McscpMessage message = new McscpMessage(null);
+        message.mFrameType = McscpBinaryWriter.PLAYER_SESSION_END;
+        message.mSessionId = sessionId;
+        return message;
+    }
+
+    /**
+     * Combines the full state of the tables into one block. v1 clients get a
+     * header line followed by the update lines, v2 clients get a single frame
+     * that contains the frames of every part
+     * @param parts the updates (and for v2 the player sessions) in order
+     */
+    public static McscpMessage snapshot(List<McscpMessage> parts) {
+        McscpMessage message = new McscpMessage(null);
+        message.mFrameType = McscpBinaryWriter.SNAPSHOT;
+        message.mParts = parts;
+        return message;
+    }
+
+    /**
+     * Wraps log lines from the backlog that were already encoded for one client
+     * @param lines the number of lines
+     * @param protocol the protocol the lines were encoded for
+     * @param encoded the encoded lines
+     */
+    static McscpMessage logBacklog(int lines, McscpProtocol protocol, ByteBuffer encoded) {
+        McscpMessage message = new McscpMessage(String.format("[LOGBACKLOG]:[LINES:%d]", lines));
+        message.mFrameType = McscpBinaryWriter.LOG_BACKLOG;
+
+        if (protocol == McscpProtocol.V2)
+            message.mBinary = encoded.asReadOnlyBuffer();
+        else
+            message.mEncoded = encoded.asReadOnlyBuffer();
+        return message;
+    }
+
+    public static McscpMessage playerJoinEvent(String uuid) {
+        return new McscpMessage(String.format("[EVENT]:[TYPE:PLAYERJOIN]:[UUID:%s]", uuid));
+    }
+
+    public static McscpMessage playerLeaveEvent(String uuid) {
+        return new McscpMessage(String.format("[EVENT]:[TYPE:PLAYERLEAVE]:[UUID:%s]", uuid));
+    }
+
+    public static McscpMessage chatEvent(String uuid, String message) {
+        return new McscpMessage(String.format("[EVENT]:[TYPE:CHAT]:[UUID:%s]:[MESSAGE:%s]", uuid, message));
+    }
+
+    public static McscpMessage deathEvent(String uuid, String message) {
+        return new McscpMessage(String.format("[EVENT]:[TYPE:DEATH]:[UUID:%s]:[MESSAGE:%s]", uuid, message));
+    }
+
+    public static McscpMessage logEvent(String newData) {
+        return new McscpMessage(Type.Log, null, String.format("[LOG]:[DATA:%s]", newData));
+    }
+
+    public static McscpMessage logDroppedEvent(long count) {
+        return new McscpMessage(String.format("[LOG]:[DROPPED:%d]", count));
+    }
+
+    /**
+     * Gets the type of the message
+     * @return the type
+     */
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * Gets the table key an update message is for. Two updates with equal keys
+     * replace each other
+     * @return the key, or null if this is not an update
+     */
+    public Object getUpdateKey() {
+        return mUpdateKey;
+    }
+
+    /**
+     * Checks if this is an update for a player table
+     * @return true for player updates, false for server updates and other messages
+     */
+    boolean isPlayerUpdate() {
+        return mFrameType == McscpBinaryWriter.PLAYER_UPDATE;
+    }
+
+    /**
+     * Gets the ordinal of the table key an update is for
+     * @return the ordinal
+     */
+    int getKeyOrdinal() {
+        return mKeyOrdinal;
+    }
+
+    /**
+     * Gets the text of the message
+     * @return the text, or null for messages that only exist in the binary protocol
+     */
+    public String getText() {
+        //Updates and snapshots are only turned into text once a v1 client needs them
+        if (mText == null) {
+            if (mValue != null)
+                mText = buildUpdateText();
+            else if (mParts != null)
+                mText = buildSnapshotText();
+        }
+
+        return mText;
+    }
+
+    /**
+     * Builds the text of a table update
+     * @return the text
+     */
+    private String buildUpdateText() {
+        if (mFrameType == McscpBinaryWriter.SERVER_UPDATE)
+            return String.format("[UPDATE]:[KEY:%s]:[VALUE:%s]", mKey.toString().toUpperCase(), mValue);
+
+        return String.format("[UPDATE]:[KEY:PLAYER:%s]:[UUID:%s]:[VALUE:%s]", mKey.toString().toUpperCase(), mUuid, mValue);
+    }
+
+    /**
+     * Builds the text of a snapshot, a header line followed by the update lines
+     * @return the text
+     */
+    private String buildSnapshotText() {
+        StringBuilder text = new StringBuilder();
+        int lines = 0;
+        for (McscpMessage part : mParts) {
+            String partText = part.getText();
+            if (partText != null) {
+                text.append("\r\n").append(partText);
+                lines++;
+            }
+        }
+        text.insert(0, String.format("[SNAPSHOT]:[LINES:%d]", lines));
+
+        return text.toString();
+    }
+
+    /**
+     * Checks if the message can be sent with a protocol version
+     * @param protocol the protocol version
+     * @return true if the message has an encoding for the protocol
+     */
+    public boolean supports(McscpProtocol protocol) {
+        return protocol == McscpProtocol.V2 || mText != null || mValue != null || mParts != null;
+    }
+
+    /**
+     * Gets the encoded message, encoding it on first use
+     * @param protocol the protocol version to encode for
+     * @return an independent read-only view of the encoded bytes
+     */
+    ByteBuffer encode(McscpProtocol protocol) {
+        if (protocol == McscpProtocol.V2) {
+            if (mBinary == null)
+                mBinary = encodeBinary().asReadOnlyBuffer();
+
+            return mBinary.duplicate();
+        }
+
+        if (mEncoded == null)
+            mEncoded = ByteBuffer.wrap((getText() + "\r\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+
+        return mEncoded.duplicate();
+    }
+
+    /**
+     * Builds the v2 frame for this message
+     * @return the frame
+     */
+    private ByteBuffer encodeBinary() {
+        McscpBinaryWriter writer = new McscpBinaryWriter(mFrameType);
+
+        switch (mFrameType) {
+            case McscpBinaryWriter.SERVER_UPDATE:
+                writer.writeVarInt(mKeyOrdinal);
+                writeValue(writer);
+                break;
+            case McscpBinaryWriter.PLAYER_UPDATE:
+                writer.writeVarInt(mSessionId).writeVarInt(mKeyOrdinal);
+                writeValue(writer);
+                break;
+            case McscpBinaryWriter.PLAYER_SESSION:
+                UUID uuid = UUID.fromString(mUuid);
+                writer.writeVarInt(mSessionId)
+                      .writeLong(uuid.getMostSignificantBits())
+                      .writeLong(uuid.getLeastSignificantBits());
+                break;
+            case McscpBinaryWriter.PLAYER_SESSION_END:
+                writer.writeVarInt(mSessionId);
+                break;
+            case McscpBinaryWriter.SNAPSHOT:
+                writer.writeVarInt(mParts.size());
+                for (McscpMessage part : mParts)
+                    writer.writeBytes(part.encodeBinary());
+                break;
+            default:
+                writer.writeUtf8(mText);
+                break;
+        }
+
+        return writer.toFrame();
+    }
+
+    /**
+     * Writes a table value as a varint / fixed point number, text values as a string
+     * @param writer the frame to write to
+     */
+    private void writeValue(McscpBinaryWriter writer) {
+        switch (mValue.getType()) {
+            case Int:
+                writer.writeByte(McscpBinaryWriter.INT).writeZigZag(mValue.getInt());
+                break;
+            case Decimal:
+                writer.writeByte(McscpBinaryWriter.DECIMAL).writeZigZag(Math.round(mValue.getDecimal() * 100));
+                break;
+            default:
+                writer.writeByte(McscpBinaryWriter.STRING).writeUtf8(mValue.toString());
+                break;
+        }
+    }
+}
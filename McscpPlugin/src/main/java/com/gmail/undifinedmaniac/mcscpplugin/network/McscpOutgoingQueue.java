@@ -0,0 +1,258 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.util.Set;
+import java.util.Map;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.ArrayDeque;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The outgoing messages of a single client. The queue is bounded by a byte cap,
+ * what happens once a slow client reaches the cap is decided by the configured
+ * policies. Only log lines and updates can be shed, every other message still
+ * counts toward the cap. A queue that grows to twice the cap has to be
+ * disconnected no matter the policies
+ */
+public class McscpOutgoingQueue {
+
+    public enum Policy {
+        DropOldestLog, CoalesceUpdates, Disconnect
+    }
+
+    private static final int HARD_LIMIT_FACTOR = 2;
+
+    private static class Entry {
+        McscpMessage message;
+        ByteBuffer buffer;
+        boolean dropped = false;
+
+        Entry(McscpMessage message, ByteBuffer buffer) {
+            this.message = message;
+            this.buffer = buffer;
+        }
+    }
+
+    private McscpProtocol mProtocol = McscpProtocol.V1;
+
+    private ArrayDeque<Entry> mEntries = new ArrayDeque<>();
+    private ArrayDeque<Entry> mLogEntries = new ArrayDeque<>();
+    private Map<Object, Entry> mUpdateEntries = new HashMap<>();
+
+    private long mMaxBytes;
+    private Set<Policy> mPolicies;
+    private long mGraceNanos;
+
+    private long mBytes = 0;
+    private int mSize = 0;
+    private boolean mCapped = false;
+    private long mCappedSince = -1;
+
+    private long mDroppedLogs = 0;
+    private long mUnreportedDroppedLogs = 0;
+    private long mCoalescedUpdates = 0;
+
+    McscpOutgoingQueue(long maxBytes, Set<Policy> policies, long graceMillis) {
+        mMaxBytes = maxBytes;
+        mPolicies = policies.isEmpty() ? EnumSet.noneOf(Policy.class) : EnumSet.copyOf(policies);
+        mGraceNanos = graceMillis * 1000000L;
+    }
+
+    /**
+     * Adds a message to the end of the queue and applies the policies if the
+     * queue goes over its cap
+     * @param message the message
+     */
+    void add(McscpMessage message) {
+        boolean coalesce = mPolicies.contains(Policy.CoalesceUpdates);
+
+        if (coalesce && message.getType() == McscpMessage.Type.Update && mCapped) {
+            //Replace a pending value for the same key if it has not been started yet
+            Entry pending = mUpdateEntries.get(message.getUpdateKey());
+            if (pending != null && !pending.dropped && pending.buffer.position() == 0) {
+                mBytes -= pending.buffer.remaining();
+                pending.message = message;
+                pending.buffer = message.encode(mProtocol);
+                mBytes += pending.buffer.remaining();
+                mCoalescedUpdates++;
+                return;
+            }
+        }
+
+        Entry entry = new Entry(message, message.encode(mProtocol));
+        mEntries.add(entry);
+        mBytes += entry.buffer.remaining();
+        mSize++;
+
+        if (message.getType() == McscpMessage.Type.Log)
+            mLogEntries.add(entry);
+        else if (coalesce && message.getType() == McscpMessage.Type.Update)
+            mUpdateEntries.put(message.getUpdateKey(), entry);
+
+        if (mBytes > mMaxBytes) {
+            mCapped = true;
+
+            if (mPolicies.contains(Policy.DropOldestLog))
+                dropOldestLogs();
+        }
+    }
+
+    /**
+     * Sets the protocol version that messages added from now on are encoded for
+     * @param protocol the protocol version
+     */
+    void setProtocol(McscpProtocol protocol) {
+        mProtocol = protocol;
+    }
+
+    /**
+     * Fills an array with the next buffers to write
+     * @param batch the array to fill
+     * @param max the maximum number of buffers to take
+     * @return the number of buffers in the array
+     */
+    int fill(ByteBuffer[] batch, int max) {
+        max = Math.min(max, batch.length);
+        int count = 0;
+        for (Entry entry : mEntries) {
+            if (entry.dropped)
+                continue;
+
+            batch[count++] = entry.buffer;
+
+            if (count == max)
+                break;
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes every message from the front of the queue that has been written
+     * completely. The queue leaves the capped state once it is down to half of
+     * the cap, dropped log lines are reported at that point
+     * @return the number of messages that were written completely
+     */
+    int removeWritten() {
+        int written = 0;
+        Entry entry;
+        while ((entry = mEntries.peek()) != null && (entry.dropped || !entry.buffer.hasRemaining())) {
+            mEntries.poll();
+
+            if (entry.dropped)
+                continue;
+
+            written++;
+            mSize--;
+            mBytes -= entry.buffer.limit();
+
+            if (mLogEntries.peek() == entry)
+                mLogEntries.poll();
+            else if (entry.message.getUpdateKey() != null && mUpdateEntries.get(entry.message.getUpdateKey()) == entry)
+                mUpdateEntries.remove(entry.message.getUpdateKey());
+        }
+
+        if (mCapped && mBytes <= mMaxBytes / 2) {
+            mCapped = false;
+
+            if (mUnreportedDroppedLogs > 0) {
+                McscpMessage report = McscpMessage.logDroppedEvent(mUnreportedDroppedLogs);
+                mUnreportedDroppedLogs = 0;
+                add(report);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Checks if the client has been capped for longer than the grace period
+     * and should be disconnected
+     * @param now the current time from System.nanoTime()
+     * @return true if the client should be disconnected
+     */
+    boolean isExpired(long now) {
+        if (!mCapped) {
+            mCappedSince = -1;
+            return false;
+        }
+
+        if (mCappedSince == -1)
+            mCappedSince = now;
+
+        return mPolicies.contains(Policy.Disconnect) && now - mCappedSince > mGraceNanos;
+    }
+
+    /**
+     * Checks if the queue grew past the hard limit of twice the cap, which
+     * happens when messages that cannot be shed keep coming
+     * @return true if the client has to be disconnected right away
+     */
+    boolean isOverHardLimit() {
+        return mBytes > mMaxBytes * HARD_LIMIT_FACTOR;
+    }
+
+    /**
+     * Checks if the queue reached its cap and has not drained yet
+     * @return true if capped
+     */
+    public boolean isCapped() {
+        return mCapped;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Gets the number of queued messages
+     * @return the queue depth
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Gets the number of bytes waiting to be written
+     * @return the queued bytes
+     */
+    public long bytes() {
+        return mBytes;
+    }
+
+    /**
+     * Gets the number of log lines dropped because of the cap
+     * @return the dropped log lines
+     */
+    public long droppedLogs() {
+        return mDroppedLogs;
+    }
+
+    /**
+     * Gets the number of updates replaced by a newer value because of the cap
+     * @return the coalesced updates
+     */
+    public long coalescedUpdates() {
+        return mCoalescedUpdates;
+    }
+
+    /**
+     * Drops log lines from the front of the queue until it is under the cap again
+     */
+    private void dropOldestLogs() {
+        while (mBytes > mMaxBytes && !mLogEntries.isEmpty()) {
+            Entry entry = mLogEntries.poll();
+
+            //A partially written line has to go out as a whole
+            if (entry.buffer.position() != 0)
+                continue;
+
+            entry.dropped = true;
+            mSize--;
+            mBytes -= entry.buffer.remaining();
+            mDroppedLogs++;
+            mUnreportedDroppedLogs++;
+        }
+    }
+}
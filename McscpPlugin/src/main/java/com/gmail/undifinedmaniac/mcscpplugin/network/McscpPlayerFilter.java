@@ -0,0 +1,80 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * Decides which players a client follows, by a set of UUIDs, by world or by
+ * the start of the player's name
+ */
+public class McscpPlayerFilter {
+
+    public enum Type {
+        None, Uuid, World, Name
+    }
+
+    private Type mType;
+    private Set<String> mUuids = null;
+    private String mValue = null;
+
+    private McscpPlayerFilter(Type type) {
+        mType = type;
+    }
+
+    /**
+     * Creates a filter from the fields of a FILTER command
+     * @param type NONE, UUID, WORLD or NAME
+     * @param value a comma separated list of UUIDs, a world name or a name prefix
+     * @return the filter, or null if the type is unknown
+     */
+    public static McscpPlayerFilter parse(String type, String value) {
+        McscpPlayerFilter filter;
+
+        switch (type.toUpperCase()) {
+            case "NONE":
+                return new McscpPlayerFilter(Type.None);
+            case "UUID":
+                filter = new McscpPlayerFilter(Type.Uuid);
+                filter.mUuids = new HashSet<>();
+                for (String uuid : value.split(",")) {
+                    if (!uuid.trim().isEmpty())
+                        filter.mUuids.add(uuid.trim().toLowerCase());
+                }
+                return filter;
+            case "WORLD":
+                filter = new McscpPlayerFilter(Type.World);
+                filter.mValue = value;
+                return filter;
+            case "NAME":
+                filter = new McscpPlayerFilter(Type.Name);
+                filter.mValue = value.toLowerCase();
+                return filter;
+            default:
+                return null;
+        }
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * Checks if a player passes the filter
+     * @param uuid the uuid of the player
+     * @param name the name of the player, or null if not known yet
+     * @param world the world of the player, or null if not known yet
+     * @return true if the client follows the player
+     */
+    boolean matches(String uuid, String name, String world) {
+        switch (mType) {
+            case Uuid:
+                return mUuids.contains(uuid.toLowerCase());
+            case World:
+                return mValue.equals(world);
+            case Name:
+                return name != null && name.toLowerCase().startsWith(mValue);
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpTableValue;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+
+/**
+ * Routes player messages to the clients that follow the player. Clients without
+ * a filter get every player, for filtered clients every player keeps a list of
+ * its watchers. Filters are only evaluated when a filter, a name or a world
+ * changes, never for each message
+ *
+ * A filtered client sees players that start / stop passing its filter as player
+ * joins / leaves, a player that starts passing is sent with its current table
+ * values. Only touched by the network side
+ */
+class McscpPlayerRouter {
+
+    private static final int KEY_COUNT = McscpPlayerTable.Key.values().length;
+
+    private static class PlayerState {
+        String uuid;
+        int sessionId;
+        String name = null;
+        String world = null;
+        McscpMessage[] latest = new McscpMessage[KEY_COUNT];
+        List<McscpClient> watchers = new ArrayList<>();
+    }
+
+    private Map<String, PlayerState> mPlayers = new HashMap<>();
+    private List<McscpClient> mUnfiltered = new ArrayList<>();
+    private Map<McscpClient, McscpPlayerFilter> mFilters = new HashMap<>();
+
+    void addClient(McscpClient client) {
+        mUnfiltered.add(client);
+    }
+
+    void removeClient(McscpClient client) {
+        if (mFilters.remove(client) != null) {
+            for (PlayerState player : mPlayers.values())
+                player.watchers.remove(client);
+        } else {
+            mUnfiltered.remove(client);
+        }
+    }
+
+    /**
+     * Replaces the filter of a client
+     * @param client the client
+     * @param filter the filter, a None filter follows every player
+     */
+    void setFilter(McscpClient client, McscpPlayerFilter filter) {
+        boolean none = filter.getType() == McscpPlayerFilter.Type.None;
+
+        if (!mFilters.containsKey(client)) {
+            if (none)
+                return;
+
+            //An unfiltered client already knows every player
+            mUnfiltered.remove(client);
+            for (PlayerState player : mPlayers.values())
+                player.watchers.add(client);
+        }
+
+        mFilters.put(client, filter);
+        for (PlayerState player : mPlayers.values())
+            updateWatcher(player, client, filter);
+
+        //Every player is known again, go back to the cheaper unfiltered routing
+        if (none) {
+            removeClient(client);
+            mUnfiltered.add(client);
+        }
+    }
+
+    /**
+     * Starts routing a player
+     * @param uuid the uuid of the player
+     * @param sessionId the session id of the player
+     * @param join the join message
+     */
+    void playerJoined(String uuid, int sessionId, McscpMessage join) {
+        PlayerState player = new PlayerState();
+        player.uuid = uuid;
+        player.sessionId = sessionId;
+        mPlayers.put(uuid, player);
+
+        for (McscpClient client : mUnfiltered)
+            client.send(McscpClient.Flag.ReportPlayerJoin, join);
+
+        for (Map.Entry<McscpClient, McscpPlayerFilter> entry : mFilters.entrySet())
+            updateWatcher(player, entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Stops routing a player
+     * @param uuid the uuid of the player
+     * @param leave the leave message
+     */
+    void playerLeft(String uuid, McscpMessage leave) {
+        PlayerState player = mPlayers.remove(uuid);
+
+        for (McscpClient client : mUnfiltered)
+            client.send(McscpClient.Flag.ReportPlayerLeave, leave);
+
+        if (player != null) {
+            for (McscpClient client : player.watchers)
+                client.send(McscpClient.Flag.ReportPlayerLeave, leave);
+        }
+    }
+
+    /**
+     * Routes a table update, a new name or world may change who follows the player
+     * @param uuid the uuid of the player
+     * @param key the key
+     * @param value the new value
+     * @param message the update message
+     */
+    void tableUpdate(String uuid, McscpPlayerTable.Key key, McscpTableValue value, McscpMessage message) {
+        PlayerState player = mPlayers.get(uuid);
+        route(player, null, message);
+
+        if (player == null)
+            return;
+
+        player.latest[key.ordinal()] = message;
+
+        if (key == McscpPlayerTable.Key.Name || key == McscpPlayerTable.Key.World) {
+            if (key == McscpPlayerTable.Key.Name)
+                player.name = value.getText();
+            else
+                player.world = value.getText();
+
+            for (Map.Entry<McscpClient, McscpPlayerFilter> entry : mFilters.entrySet())
+                updateWatcher(player, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Sends a message about a player to every client that follows the player
+     * @param uuid the uuid of the player
+     * @param flag the session flag a client must have enabled, or null for all clients
+     * @param message the message
+     */
+    void route(String uuid, McscpClient.Flag flag, McscpMessage message) {
+        route(mPlayers.get(uuid), flag, message);
+    }
+
+    private void route(PlayerState player, McscpClient.Flag flag, McscpMessage message) {
+        for (McscpClient client : mUnfiltered)
+            client.send(flag, message);
+
+        if (player != null) {
+            for (McscpClient client : player.watchers)
+                client.send(flag, message);
+        }
+    }
+
+    /**
+     * Adds / removes a filtered client as a watcher of a player
+     * @param player the player
+     * @param client the client
+     * @param filter the filter of the client
+     */
+    private void updateWatcher(PlayerState player, McscpClient client, McscpPlayerFilter filter) {
+        boolean matches = filter.matches(player.uuid, player.name, player.world);
+        boolean watching = player.watchers.contains(client);
+
+        if (matches && !watching) {
+            player.watchers.add(client);
+
+            client.send(null, McscpMessage.playerSession(player.uuid, player.sessionId));
+            client.send(McscpClient.Flag.ReportPlayerJoin, McscpMessage.playerJoinEvent(player.uuid));
+            for (McscpMessage update : player.latest) {
+                if (update != null)
+                    client.send(null, update);
+            }
+        } else if (!matches && watching) {
+            player.watchers.remove(client);
+            client.send(McscpClient.Flag.ReportPlayerLeave, McscpMessage.playerLeaveEvent(player.uuid));
+        }
+    }
+}
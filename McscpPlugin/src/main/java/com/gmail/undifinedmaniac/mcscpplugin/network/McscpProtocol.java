@@ -0,0 +1,40 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+/**
+ * The MCSCP protocol versions a client can pick during the handshake
+ *
+ * V1 is the original line based text protocol. V2 uses the same text handshake
+ * and client commands, but everything the server sends after the handshake is a
+ * length-prefixed binary frame (see McscpBinaryWriter)
+ */
+public enum McscpProtocol {
+    V1("MCSCPV1.0.0"), V2("MCSCPV2.0.0");
+
+    private final String mName;
+
+    McscpProtocol(String name) {
+        mName = name;
+    }
+
+    /**
+     * Gets the name used for this version in the handshake
+     * @return the name
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Finds a protocol version by its handshake name
+     * @param name the name
+     * @return the version, or null if it is not supported
+     */
+    public static McscpProtocol fromName(String name) {
+        for (McscpProtocol protocol : values()) {
+            if (protocol.mName.equals(name))
+                return protocol;
+        }
+
+        return null;
+    }
+}
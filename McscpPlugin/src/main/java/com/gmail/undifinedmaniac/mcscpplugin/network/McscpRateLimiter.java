@@ -0,0 +1,82 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
+
+/**
+ * Token buckets for the commands of one client, one bucket per command type.
+ * A bucket refills at the configured rate up to its burst size and every
+ * command takes one token. The buckets are plain arrays indexed by the command
+ * type, so checking a command never allocates. Only touched by the network side
+ */
+class McscpRateLimiter {
+
+    private static final McscpCommand.CommandType[] TYPES = McscpCommand.CommandType.values();
+    private static final long VIOLATION_WINDOW = 10000000000L;
+
+    private double[] mRates = new double[TYPES.length];
+    private double[] mBursts = new double[TYPES.length];
+    private double[] mTokens = new double[TYPES.length];
+    private long[] mLastRefill = new long[TYPES.length];
+
+    //Rejected commands in the current window, for disconnecting abusers
+    private int mMaxViolations;
+    private int mViolations = 0;
+    private long mWindowStart;
+
+    /**
+     * @param config the server config to read the limits from
+     */
+    McscpRateLimiter(IMcscpServerConfig config) {
+        long now = System.nanoTime();
+
+        for (McscpCommand.CommandType type : TYPES) {
+            int i = type.ordinal();
+            mRates[i] = config.getCommandRate(type) / 1000000000.0;
+            mBursts[i] = Math.max(1, config.getCommandBurst(type));
+            mTokens[i] = mBursts[i];
+            mLastRefill[i] = now;
+        }
+
+        mMaxViolations = config.getMaxRateLimitViolations();
+        mWindowStart = now;
+    }
+
+    /**
+     * Takes a token for a command
+     * @param type the type of the command
+     * @param now the current time from System.nanoTime()
+     * @return true if the command may run, false if it is over the limit
+     */
+    boolean tryAcquire(McscpCommand.CommandType type, long now) {
+        int i = type.ordinal();
+        if (mRates[i] <= 0)
+            return true;
+
+        double tokens = Math.min(mBursts[i], mTokens[i] + (now - mLastRefill[i]) * mRates[i]);
+        mLastRefill[i] = now;
+
+        if (tokens < 1) {
+            mTokens[i] = tokens;
+            return false;
+        }
+
+        mTokens[i] = tokens - 1;
+        return true;
+    }
+
+    /**
+     * Counts a rejected command
+     * @param now the current time from System.nanoTime()
+     * @return true if the client was rejected too often and should be disconnected
+     */
+    boolean addViolation(long now) {
+        if (now - mWindowStart >= VIOLATION_WINDOW) {
+            mWindowStart = now;
+            mViolations = 0;
+        }
+
+        mViolations++;
+        return mMaxViolations > 0 && mViolations > mMaxViolations;
+    }
+}
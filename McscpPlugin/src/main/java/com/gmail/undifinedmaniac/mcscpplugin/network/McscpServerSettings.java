@@ -0,0 +1,246 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+
+import java.util.Set;
+import java.util.EnumSet;
+import java.util.Collections;
+
+/**
+ * An immutable copy of the server settings. The config is read and parsed once
+ * when the copy is made, so the network side and every new connection only read
+ * plain fields, and a bad entry is only reported once
+ */
+public final class McscpServerSettings implements IMcscpServerConfig {
+
+    private static final McscpCommand.CommandType[] COMMAND_TYPES = McscpCommand.CommandType.values();
+    private static final McscpHistory.Resolution[] RESOLUTIONS = McscpHistory.Resolution.values();
+    private static final McscpServerTable.Key[] SERVER_KEYS = McscpServerTable.Key.values();
+    private static final McscpPlayerTable.Key[] PLAYER_KEYS = McscpPlayerTable.Key.values();
+
+    private final String mAddress;
+    private final int mPort;
+
+    private final boolean mNetworkThread;
+    private final long mEventBatchInterval;
+
+    private final int mMaxLineLength;
+
+    private final long mCommandOutputWindow;
+    private final int mMaxCommandsInFlight;
+    private final long mTickBudget;
+
+    private final float[] mCommandRates = new float[COMMAND_TYPES.length];
+    private final int[] mCommandBursts = new int[COMMAND_TYPES.length];
+    private final int mMaxRateLimitViolations;
+
+    private final long mMaxQueueBytes;
+    private final Set<McscpOutgoingQueue.Policy> mSlowClientPolicies;
+    private final long mSlowClientGracePeriod;
+
+    private final int mLogBufferSize;
+    private final int mLogBacklogLines;
+    private final int mLogBacklogBytes;
+    private final boolean mSendLogBacklogOnFlag;
+
+    private final boolean mRecordHistory;
+    private final String mHistoryFile;
+    private final int[] mHistoryLengths = new int[RESOLUTIONS.length];
+
+    private final boolean mAllowCompression;
+    private final int mCompressionLevel;
+    private final int mMinCompressedBatch;
+
+    private final int[] mPlayerPollIntervals = new int[PLAYER_KEYS.length];
+    private final float[] mServerChangeThresholds = new float[SERVER_KEYS.length];
+    private final float[] mPlayerChangeThresholds = new float[PLAYER_KEYS.length];
+
+    /**
+     * Reads every setting from a config
+     * @param config the config to copy
+     */
+    public McscpServerSettings(IMcscpServerConfig config) {
+        mAddress = config.getAddress();
+        mPort = config.getPort();
+
+        mNetworkThread = config.useNetworkThread();
+        mEventBatchInterval = config.getEventBatchInterval();
+
+        mMaxLineLength = config.getMaxLineLength();
+
+        mCommandOutputWindow = config.getCommandOutputWindow();
+        mMaxCommandsInFlight = config.getMaxCommandsInFlight();
+        mTickBudget = config.getTickBudget();
+
+        for (McscpCommand.CommandType type : COMMAND_TYPES) {
+            mCommandRates[type.ordinal()] = config.getCommandRate(type);
+            mCommandBursts[type.ordinal()] = config.getCommandBurst(type);
+        }
+        mMaxRateLimitViolations = config.getMaxRateLimitViolations();
+
+        mMaxQueueBytes = config.getMaxQueueBytes();
+        Set<McscpOutgoingQueue.Policy> policies = EnumSet.noneOf(McscpOutgoingQueue.Policy.class);
+        policies.addAll(config.getSlowClientPolicies());
+        mSlowClientPolicies = Collections.unmodifiableSet(policies);
+        mSlowClientGracePeriod = config.getSlowClientGracePeriod();
+
+        mLogBufferSize = config.getLogBufferSize();
+        mLogBacklogLines = config.getLogBacklogLines();
+        mLogBacklogBytes = config.getLogBacklogBytes();
+        mSendLogBacklogOnFlag = config.sendLogBacklogOnFlag();
+
+        mRecordHistory = config.recordHistory();
+        mHistoryFile = config.getHistoryFile();
+        for (McscpHistory.Resolution resolution : RESOLUTIONS)
+            mHistoryLengths[resolution.ordinal()] = config.getHistoryLength(resolution);
+
+        mAllowCompression = config.allowCompression();
+        mCompressionLevel = config.getCompressionLevel();
+        mMinCompressedBatch = config.getMinCompressedBatch();
+
+        for (McscpPlayerTable.Key key : PLAYER_KEYS) {
+            mPlayerPollIntervals[key.ordinal()] = config.getPlayerPollInterval(key);
+            mPlayerChangeThresholds[key.ordinal()] = config.getPlayerChangeThreshold(key);
+        }
+        for (McscpServerTable.Key key : SERVER_KEYS)
+            mServerChangeThresholds[key.ordinal()] = config.getServerChangeThreshold(key);
+    }
+
+    @Override
+    public String getAddress() {
+        return mAddress;
+    }
+
+    @Override
+    public int getPort() {
+        return mPort;
+    }
+
+    @Override
+    public boolean useNetworkThread() {
+        return mNetworkThread;
+    }
+
+    @Override
+    public long getEventBatchInterval() {
+        return mEventBatchInterval;
+    }
+
+    @Override
+    public int getMaxLineLength() {
+        return mMaxLineLength;
+    }
+
+    @Override
+    public long getCommandOutputWindow() {
+        return mCommandOutputWindow;
+    }
+
+    @Override
+    public int getMaxCommandsInFlight() {
+        return mMaxCommandsInFlight;
+    }
+
+    @Override
+    public long getTickBudget() {
+        return mTickBudget;
+    }
+
+    @Override
+    public float getCommandRate(McscpCommand.CommandType type) {
+        return mCommandRates[type.ordinal()];
+    }
+
+    @Override
+    public int getCommandBurst(McscpCommand.CommandType type) {
+        return mCommandBursts[type.ordinal()];
+    }
+
+    @Override
+    public int getMaxRateLimitViolations() {
+        return mMaxRateLimitViolations;
+    }
+
+    @Override
+    public long getMaxQueueBytes() {
+        return mMaxQueueBytes;
+    }
+
+    @Override
+    public Set<McscpOutgoingQueue.Policy> getSlowClientPolicies() {
+        return mSlowClientPolicies;
+    }
+
+    @Override
+    public long getSlowClientGracePeriod() {
+        return mSlowClientGracePeriod;
+    }
+
+    @Override
+    public int getLogBufferSize() {
+        return mLogBufferSize;
+    }
+
+    @Override
+    public int getLogBacklogLines() {
+        return mLogBacklogLines;
+    }
+
+    @Override
+    public int getLogBacklogBytes() {
+        return mLogBacklogBytes;
+    }
+
+    @Override
+    public boolean sendLogBacklogOnFlag() {
+        return mSendLogBacklogOnFlag;
+    }
+
+    @Override
+    public boolean recordHistory() {
+        return mRecordHistory;
+    }
+
+    @Override
+    public String getHistoryFile() {
+        return mHistoryFile;
+    }
+
+    @Override
+    public int getHistoryLength(McscpHistory.Resolution resolution) {
+        return mHistoryLengths[resolution.ordinal()];
+    }
+
+    @Override
+    public boolean allowCompression() {
+        return mAllowCompression;
+    }
+
+    @Override
+    public int getCompressionLevel() {
+        return mCompressionLevel;
+    }
+
+    @Override
+    public int getMinCompressedBatch() {
+        return mMinCompressedBatch;
+    }
+
+    @Override
+    public int getPlayerPollInterval(McscpPlayerTable.Key key) {
+        return mPlayerPollIntervals[key.ordinal()];
+    }
+
+    @Override
+    public float getServerChangeThreshold(McscpServerTable.Key key) {
+        return mServerChangeThresholds[key.ordinal()];
+    }
+
+    @Override
+    public float getPlayerChangeThreshold(McscpPlayerTable.Key key) {
+        return mPlayerChangeThresholds[key.ordinal()];
+    }
+}
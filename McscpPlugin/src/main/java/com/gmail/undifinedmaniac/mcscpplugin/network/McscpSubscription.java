@@ -0,0 +1,207 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * The table keys a client wants and how often it wants them. A client that never
+ * subscribes gets every key at full rate. Updates for a rate limited key are held
+ * back until its interval has passed, only the newest value is sent then
+ *
+ * A subscription is written as a comma separated list of keys, each optionally
+ * followed by @ and the maximum rate in Hz (e.g. TPS@1,USEDRAM). ALL stands for
+ * every key and an empty list for none
+ */
+public class McscpSubscription {
+
+    private static final long ALL_KEYS = -1L;
+    private static final long INVALID = Long.MIN_VALUE;
+    private static final McscpServerTable.Key[] SERVER_KEYS = McscpServerTable.Key.values();
+    private static final McscpPlayerTable.Key[] PLAYER_KEYS = McscpPlayerTable.Key.values();
+
+    private static class Slot {
+        long lastSent;
+        long interval;
+        McscpMessage pending = null;
+    }
+
+    private long mServerMask = ALL_KEYS;
+    private long mPlayerMask = ALL_KEYS;
+    private long[] mServerIntervals = new long[SERVER_KEYS.length];
+    private long[] mPlayerIntervals = new long[PLAYER_KEYS.length];
+
+    private Map<Object, Slot> mSlots = new HashMap<>();
+    private long mNextDue = Long.MAX_VALUE;
+
+    /**
+     * Replaces the subscription, nothing changes if either list is invalid
+     * @param serverKeys the server keys
+     * @param playerKeys the player keys
+     * @return true if both lists were valid
+     */
+    public boolean set(String serverKeys, String playerKeys) {
+        long[] serverIntervals = new long[SERVER_KEYS.length];
+        long[] playerIntervals = new long[PLAYER_KEYS.length];
+
+        long serverMask = parse(serverKeys, SERVER_KEYS, serverIntervals);
+        long playerMask = parse(playerKeys, PLAYER_KEYS, playerIntervals);
+        if (serverMask == INVALID || playerMask == INVALID)
+            return false;
+
+        mServerMask = serverMask;
+        mPlayerMask = playerMask;
+        mServerIntervals = serverIntervals;
+        mPlayerIntervals = playerIntervals;
+
+        //Held back values belong to the old subscription
+        mSlots.clear();
+        mNextDue = Long.MAX_VALUE;
+        return true;
+    }
+
+    /**
+     * Gets the server keys the client wants
+     * @return a bit for every key ordinal
+     */
+    public long serverMask() {
+        return mServerMask;
+    }
+
+    /**
+     * Gets the player keys the client wants
+     * @return a bit for every key ordinal
+     */
+    public long playerMask() {
+        return mPlayerMask;
+    }
+
+    /**
+     * Checks if a message should be sent to the client right away. Updates for
+     * keys that are not wanted are dropped, updates that come too soon are held back
+     * @param message the message
+     * @return true to send the message now
+     */
+    boolean offer(McscpMessage message) {
+        if (message.getType() != McscpMessage.Type.Update)
+            return true;
+
+        int ordinal = message.getKeyOrdinal();
+        boolean player = message.isPlayerUpdate();
+
+        if (((player ? mPlayerMask : mServerMask) & (1L << ordinal)) == 0)
+            return false;
+
+        long interval = player ? mPlayerIntervals[ordinal] : mServerIntervals[ordinal];
+        if (interval == 0)
+            return true;
+
+        long now = System.nanoTime();
+        Slot slot = mSlots.get(message.getUpdateKey());
+
+        if (slot == null) {
+            slot = new Slot();
+            slot.interval = interval;
+            slot.lastSent = now;
+            mSlots.put(message.getUpdateKey(), slot);
+            return true;
+        }
+
+        if (slot.pending == null && now - slot.lastSent >= interval) {
+            slot.lastSent = now;
+            return true;
+        }
+
+        slot.pending = message;
+        mNextDue = Math.min(mNextDue, slot.lastSent + interval);
+        return false;
+    }
+
+    /**
+     * Gets the time the next held back update is due
+     * @return the time from System.nanoTime(), or Long.MAX_VALUE if none are held back
+     */
+    long nextDue() {
+        return mNextDue;
+    }
+
+    /**
+     * Takes the held back updates whose interval has passed
+     * @param now the current time from System.nanoTime()
+     * @param released receives the updates to send
+     */
+    void release(long now, List<McscpMessage> released) {
+        if (now < mNextDue)
+            return;
+
+        mNextDue = Long.MAX_VALUE;
+
+        Iterator<Slot> slots = mSlots.values().iterator();
+        while (slots.hasNext()) {
+            Slot slot = slots.next();
+            long due = slot.lastSent + slot.interval;
+
+            if (slot.pending != null) {
+                if (now >= due) {
+                    released.add(slot.pending);
+                    slot.pending = null;
+                    slot.lastSent = now;
+                } else {
+                    mNextDue = Math.min(mNextDue, due);
+                }
+            } else if (now >= due) {
+                //Forget keys that have gone quiet (e.g. players that left)
+                slots.remove();
+            }
+        }
+    }
+
+    /**
+     * Parses a list of keys
+     * @param list the list
+     * @param keys every key of the table
+     * @param intervals receives the minimum interval of every key in nanoseconds
+     * @return a bit for every key ordinal, or INVALID if the list is invalid
+     */
+    private static long parse(String list, Enum<?>[] keys, long[] intervals) {
+        long mask = 0;
+
+        for (String entry : list.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty())
+                continue;
+
+            long interval = 0;
+            int rateStart = entry.indexOf('@');
+            if (rateStart != -1) {
+                try {
+                    double rate = Double.parseDouble(entry.substring(rateStart + 1));
+                    if (!(rate > 0))
+                        return INVALID;
+                    interval = (long) (1000000000L / rate);
+                } catch (NumberFormatException error) {
+                    return INVALID;
+                }
+                entry = entry.substring(0, rateStart);
+            }
+
+            boolean found = false;
+            for (Enum<?> key : keys) {
+                if (entry.equalsIgnoreCase("ALL") || entry.equalsIgnoreCase(key.name())) {
+                    mask |= 1L << key.ordinal();
+                    intervals[key.ordinal()] = interval;
+                    found = true;
+                }
+            }
+
+            if (!found)
+                return INVALID;
+        }
+
+        return mask;
+    }
+}
@@ -1,11 +1,18 @@
 package com.gmail.undifinedmaniac.mcscpplugin.network;
 
+import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommand;
 import com.gmail.undifinedmaniac.mcscpplugin.command.McscpCommandProcessor;
 import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpServerConfig;
 import com.gmail.undifinedmaniac.mcscpplugin.table.McscpPlayerTable;
 import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpTableValue;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import java.text.SimpleDateFormat;
 
 import java.io.IOException;
 
@@ -22,10 +29,18 @@ import java.util.logging.Level;
 /**
  * This class contains a TCP listen server which accepts
  * incoming connections from MCSCP clients
+ *
+ * Socket I/O either runs on the server tick (processEvents) or on a dedicated
+ * network thread that blocks in select(). Either way, client state is only ever
+ * touched by the network side, and anything that needs the game state is handed
+ * over to the tick through a task queue
  */
 public class McscpTcpServer {
 
+    private static final long EVENT_WINDOW_NANOS = 1000000000L;
+
     private InetSocketAddress mAddress;
+    private IMcscpServerConfig mConfig;
     private Selector mSelector;
     private SelectionKey mServerKey;
     private HashMap<SelectionKey, McscpClient> mClients;
@@ -35,32 +50,416 @@ public class McscpTcpServer {
     private McscpServerTable mServerTable;
     private Map<String, McscpPlayerTable> mPlayerTables;
     private int mTickCount = 0;
+    private long mTick = 0;
+
+    private boolean mThreaded;
+    private Thread mNetworkThread = null;
+    private volatile boolean mRunning = false;
+    private volatile int mClientCount = 0;
+    private Queue<NetworkTask> mNetworkTasks = new ConcurrentLinkedQueue<>();
+    private Queue<Runnable> mTickTasks = new ConcurrentLinkedQueue<>();
+    private List<McscpClient> mPendingOutput = new ArrayList<>();
+    private List<McscpClient> mBackedUpClients = new ArrayList<>();
+    private List<McscpClient> mTimedClients = new ArrayList<>();
+    private List<McscpConsoleOutput> mOutputWindows = new ArrayList<>();
+    private McscpPlayerRouter mRouter = new McscpPlayerRouter();
+    private long mNextTimer = Long.MAX_VALUE;
+
+    //Work for the network side is delivered in batches, the selector is only
+    //woken for the first task or log line of a batch
+    private AtomicBoolean mBatchPending = new AtomicBoolean(false);
+    private long mBatchInterval;
+    private long mBatchDue = Long.MAX_VALUE;
+    private McscpLatencyStats mEventLatency = new McscpLatencyStats();
+    private McscpTickStats mTickStats = new McscpTickStats();
+    private McscpTickScheduler mClientWork;
+
+    //The event latency of the current window belongs to the network side, the
+    //last full window is published for the server table keys
+    private long mEventWindowStart = 0;
+    private long mEventWindowTotal = 0;
+    private long mEventWindowCount = 0;
+    private long mEventWindowMax = 0;
+    private volatile int mRecentEventLatency = 0;
+    private volatile int mRecentEventLatencyMax = 0;
+
+    //The keys at least one client subscribed to, written by the network side
+    private volatile long mServerKeyMask = 0;
+    private volatile long mPlayerKeyMask = 0;
+    private long mAppliedServerKeyMask = 0;
+    private long mAppliedPlayerKeyMask = 0;
+
+    //Short ids for the binary protocol, only touched by the network side
+    private Map<String, Integer> mSessionIds = new HashMap<>();
+    private int mNextSessionId = 1;
+
+    //The snapshot for new clients is only rebuilt once a table has changed. The
+    //copy of the tables belongs to the tick, the message to the network side
+    private int mTableVersion = 0;
+    private int mSnapshotVersion = -1;
+    private Map<McscpServerTable.Key, McscpTableValue> mSnapshotServerData = null;
+    private Map<String, Map<McscpPlayerTable.Key, McscpTableValue>> mSnapshotPlayerData = null;
+    private Object mSnapshotSource = null;
+    private McscpMessage mSnapshot = null;
+
+    //Log lines from any thread wait in a ring until the network side formats and
+    //sends them with the next batch
+    private McscpLogRing mLogRing;
+    private McscpLogBacklog mLogBacklog;
+
+    //Server keys recorded to disk by the history thread, null if disabled
+    private McscpHistory mHistory = null;
+    private McscpLogRing.Handler mLogHandler = this::sendLog;
+    private SimpleDateFormat mLogTimeFormat = new SimpleDateFormat("hh:mm a");
+    private long mLogMinute = -1;
+    private String mLogTime = null;
+
+    /**
+     * Work handed to the network side, stamped so the delay until it runs can be measured
+     */
+    private static class NetworkTask {
+        final long published = System.nanoTime();
+        final Runnable task;
+
+        NetworkTask(Runnable task) {
+            this.task = task;
+        }
+    }
 
-    public McscpTcpServer(IMcscpDataFetcher fetcher, String address, int port) {
-        mAddress = new InetSocketAddress(address, port);
+    public McscpTcpServer(IMcscpDataFetcher fetcher, IMcscpServerConfig config) {
+        mAddress = new InetSocketAddress(config.getAddress(), config.getPort());
+        mConfig = config;
+        mThreaded = config.useNetworkThread();
         mClients = new HashMap<>();
         mFetcher = fetcher;
         mCommandProcessor = new McscpCommandProcessor(mFetcher);
         mServerTable = new McscpServerTable(mFetcher, this);
         mServerTable.updateKeys();
         mPlayerTables = new HashMap<>();
+        if (config.recordHistory())
+            mHistory = new McscpHistory(this, config.getHistoryFile());
+        mLogRing = new McscpLogRing(config.getLogBufferSize());
+        mLogBacklog = new McscpLogBacklog(config.getLogBacklogLines(), config.getLogBacklogBytes());
+        mBatchInterval = config.getEventBatchInterval() * 1000000L;
+        mClientWork = new McscpTickScheduler(mFetcher, config.getTickBudget());
     }
 
     /**
-     * Processes events (AKA accept connections, notify clients
-     * about read and write events)
+     * Processes events for the current server tick. Without a network thread this
+     * also accepts connections and notifies clients about read and write events
      */
     public void processEvents() {
+        long tickStart = System.nanoTime();
+
+        if (!mThreaded)
+            processNetworkEvents(false);
+
+        applySubscriptions();
+
+        if (!mTickTasks.isEmpty()) {
+            long start = System.nanoTime();
+            runTasks(mTickTasks);
+            mTickStats.record(McscpTickStats.Phase.TickTasks, System.nanoTime() - start);
+        }
+
+        long clientWork = mClientWork.run();
+        if (clientWork != 0)
+            mTickStats.record(McscpTickStats.Phase.ClientWork, clientWork);
+
+        if (mTickCount >= 20) {
+            mTickCount = 0;
+            mTickStats.startWindow();
+            mClientWork.startWindow();
+
+            if (mClientCount != 0 || mHistory != null) {
+                long start = System.nanoTime();
+                mServerTable.updateKeys();
+                mTickStats.record(McscpTickStats.Phase.ServerTable, System.nanoTime() - start);
+            }
+
+            if (mHistory != null)
+                mHistory.record(System.currentTimeMillis() / 1000, mServerTable);
+
+            if (mClientCount != 0) {
+                long start = System.nanoTime();
+                for (McscpPlayerTable table : mPlayerTables.values())
+                    table.updateDirtyKeys(mTick);
+                mTickStats.record(McscpTickStats.Phase.PlayerTables, System.nanoTime() - start);
+            }
+        }
+
+        mTickCount++;
+        mTick++;
+
+        if (!mThreaded) {
+            deliverBatch();
+            runTimers();
+            flushClients();
+        }
+
+        mTickStats.record(McscpTickStats.Phase.Tick, System.nanoTime() - tickStart);
+    }
+
+    /**
+     * Gets the scheduler that runs client commands on the tick
+     * @return the scheduler
+     */
+    public McscpTickScheduler getClientWork() {
+        return mClientWork;
+    }
+
+    /**
+     * Gets the timings of the plugin's own work
+     * @return the stats
+     */
+    public McscpTickStats getTickStats() {
+        return mTickStats;
+    }
+
+    /**
+     * Checks if a server key is recorded in the history, recorded keys are
+     * read even if no client wants them
+     * @param key the key
+     * @return true if the key is recorded
+     */
+    public boolean isRecorded(McscpServerTable.Key key) {
+        return mHistory != null && McscpHistory.isRecorded(key);
+    }
+
+    /**
+     * Answers a STATS command, the tick copies its phases and the network side
+     * adds its own to the reply so neither reads the other's live stats
+     * @param client the client
+     * @param id the request id to put in the reply, or null
+     */
+    void queryStats(McscpClient client, String id) {
+        runOnTickThread(() -> {
+            McscpLatencyStats[] tickPhases = mTickStats.copyTickPhases();
+            runOnNetworkThread(() -> client.requestAnswered(
+                    new McscpMessage(McscpCommand.addId(mTickStats.report(tickPhases), id))));
+        });
+    }
+
+    /**
+     * Answers a HISTORY command from the history thread, called by the network side
+     * @param client the client
+     * @param key the key
+     * @param from the start of the range in epoch seconds
+     * @param to the end of the range in epoch seconds
+     * @param id the request id to put in the reply, or null
+     * @return false if no history is recorded
+     */
+    boolean queryHistory(McscpClient client, McscpServerTable.Key key, long from, long to, String id) {
+        if (mHistory == null)
+            return false;
+
+        mHistory.query(client, key, from, to, id);
+        return true;
+    }
+
+    /**
+     * Checks if at least one client wants a server key, keys nobody wants are
+     * not read from the game
+     * @param key the key
+     * @return true if the key is subscribed
+     */
+    public boolean isSubscribed(McscpServerTable.Key key) {
+        return (mServerKeyMask & (1L << key.ordinal())) != 0;
+    }
+
+    /**
+     * Checks if at least one client wants a player key
+     * @param key the key
+     * @return true if the key is subscribed
+     */
+    public boolean isSubscribed(McscpPlayerTable.Key key) {
+        return (mPlayerKeyMask & (1L << key.ordinal())) != 0;
+    }
+
+    /**
+     * Recomputes the keys that at least one client wants, called by the network side
+     * whenever a client connects, disconnects or changes its subscription
+     */
+    void updateSubscriptions() {
+        long serverMask = 0;
+        long playerMask = 0;
+        for (McscpClient client : mClients.values()) {
+            serverMask |= client.subscription().serverMask();
+            playerMask |= client.subscription().playerMask();
+        }
+
+        mServerKeyMask = serverMask;
+        mPlayerKeyMask = playerMask;
+    }
+
+    /**
+     * Refreshes keys that were not read while nobody wanted them and are wanted again
+     */
+    private void applySubscriptions() {
+        long serverMask = mServerKeyMask;
+        long playerMask = mPlayerKeyMask;
+        long addedServerKeys = serverMask & ~mAppliedServerKeyMask;
+        long addedPlayerKeys = playerMask & ~mAppliedPlayerKeyMask;
+        mAppliedServerKeyMask = serverMask;
+        mAppliedPlayerKeyMask = playerMask;
+
+        if (addedServerKeys != 0)
+            mServerTable.updateKeys();
+
+        if (addedPlayerKeys != 0) {
+            for (McscpPlayerTable.Key key : McscpPlayerTable.Key.values()) {
+                if ((addedPlayerKeys & (1L << key.ordinal())) != 0) {
+                    for (McscpPlayerTable table : mPlayerTables.values())
+                        table.markDirty(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues work that must run on the server tick (anything that touches
+     * the game state)
+     * @param task the work to run
+     */
+    public void runOnTickThread(Runnable task) {
+        mTickTasks.add(task);
+    }
+
+    /**
+     * Queues work of a client that must run on the server tick, it shares the
+     * tick budget fairly with the work of other clients. Called by the network side
+     * @param client the client
+     * @param task the work to run
+     */
+    void runClientWork(McscpClient client, Runnable task) {
+        mClientWork.submit(client, task);
+    }
+
+    /**
+     * Queues work that must run on the network side (anything that touches
+     * clients), it runs with the next batch
+     * @param task the work to run
+     */
+    public void runOnNetworkThread(Runnable task) {
+        mNetworkTasks.add(new NetworkTask(task));
+        startBatch();
+    }
+
+    /**
+     * Wakes the network thread up if this is the first piece of work of a batch
+     */
+    private void startBatch() {
+        if (!mBatchPending.getAndSet(true) && mThreaded && mSelector != null)
+            mSelector.wakeup();
+    }
+
+    /**
+     * Runs the queued tasks and sends the queued log lines once the batch
+     * interval has passed since the first of them arrived
+     */
+    private void deliverBatch() {
+        long now = System.nanoTime();
+
+        if (mBatchDue == Long.MAX_VALUE) {
+            if (!mBatchPending.get())
+                return;
+            mBatchDue = now + mBatchInterval;
+        }
+
+        if (now < mBatchDue)
+            return;
+
+        mBatchDue = Long.MAX_VALUE;
+        mBatchPending.set(false);
+
+        NetworkTask task;
+        while ((task = mNetworkTasks.poll()) != null) {
+            long latency = now - task.published;
+            mEventLatency.record(latency);
+            mEventWindowTotal += latency;
+            mEventWindowCount++;
+            mEventWindowMax = Math.max(mEventWindowMax, latency);
+
+            try {
+                task.task.run();
+            } catch (RuntimeException error) {
+                mFetcher.logMessage(Level.SEVERE, "ERROR: Exception while running a queued task: " + error);
+            }
+        }
+
+        drainLogs();
+
+        if (now - mEventWindowStart >= EVENT_WINDOW_NANOS)
+            publishEventLatency(now);
+
+        mTickStats.record(McscpTickStats.Phase.NetworkTasks, System.nanoTime() - now);
+    }
+
+    /**
+     * Publishes the event latency of the window that just ended and starts a new one
+     * @param now the current time from System.nanoTime()
+     */
+    private void publishEventLatency(long now) {
+        mRecentEventLatency = mEventWindowCount == 0 ? 0 : (int) (mEventWindowTotal / mEventWindowCount / 1000);
+        mRecentEventLatencyMax = (int) (mEventWindowMax / 1000);
+
+        mEventWindowStart = now;
+        mEventWindowTotal = 0;
+        mEventWindowCount = 0;
+        mEventWindowMax = 0;
+    }
+
+    /**
+     * Gets the mean time events waited before the network side handled them
+     * during the last window, may be called from any thread
+     * @return the time in microseconds
+     */
+    public int getRecentEventLatency() {
+        return mRecentEventLatency;
+    }
+
+    /**
+     * Gets the longest time an event waited before the network side handled it
+     * during the last window, may be called from any thread
+     * @return the time in microseconds
+     */
+    public int getRecentEventLatencyMax() {
+        return mRecentEventLatencyMax;
+    }
+
+    /**
+     * Gets how long work handed to the network side waited before it ran,
+     * only read by the network side
+     * @return the stats
+     */
+    public McscpLatencyStats getEventLatency() {
+        return mEventLatency;
+    }
+
+    /**
+     * Accepts connections and notifies clients about read and write events
+     * @param block true to wait in select() until something happens
+     */
+    private void processNetworkEvents(boolean block) {
 
         int numberOfKeys = 0;
 
         try {
-            numberOfKeys = mSelector.selectNow();
+            if (!block) {
+                numberOfKeys = mSelector.selectNow();
+            } else if (mNextTimer == Long.MAX_VALUE && mBatchDue == Long.MAX_VALUE) {
+                numberOfKeys = mSelector.select();
+            } else {
+                //Wake up in time for the next held back update or batch
+                long timeout = (Math.min(mNextTimer, mBatchDue) - System.nanoTime() + 999999) / 1000000;
+                numberOfKeys = timeout > 0 ? mSelector.select(timeout) : mSelector.selectNow();
+            }
         } catch (IOException error) {
             mFetcher.logMessage(Level.SEVERE, "ERROR: IOException while processing events");
         }
 
         if (numberOfKeys > 0) {
+            long start = System.nanoTime();
             Iterator keys = mSelector.selectedKeys().iterator();
 
             while (keys.hasNext()) {
@@ -79,18 +478,205 @@ public class McscpTcpServer {
                 else if (key.isWritable())
                     writeEvent(key);
             }
+
+            mTickStats.record(McscpTickStats.Phase.NetworkIo, System.nanoTime() - start);
         }
+    }
 
-        if (mTickCount >= 20) {
-            mTickCount = 0;
-            if (mClients.size() != 0) {
-                mServerTable.updateKeys();
-                for (McscpPlayerTable table : mPlayerTables.values())
-                    table.updateKeys();
+    /**
+     * Main loop of the network thread
+     */
+    private void runNetworkLoop() {
+        while (mRunning) {
+            processNetworkEvents(true);
+            deliverBatch();
+            runTimers();
+            flushClients();
+        }
+    }
+
+    /**
+     * Remembers a client that has queued output, it is flushed at the end of
+     * the current round
+     * @param client the client
+     */
+    void scheduleFlush(McscpClient client) {
+        mPendingOutput.add(client);
+    }
+
+    /**
+     * Remembers a client that waits for the socket or is over its queue cap,
+     * its queue is checked every round until it has caught up
+     * @param client the client
+     */
+    void watchBackedUpClient(McscpClient client) {
+        mBackedUpClients.add(client);
+    }
+
+    /**
+     * Replaces the player filter of a client, called by the network side
+     * @param client the client
+     * @param filter the filter
+     */
+    void setPlayerFilter(McscpClient client, McscpPlayerFilter filter) {
+        mRouter.setFilter(client, filter);
+    }
+
+    /**
+     * Remembers a client that holds back rate limited updates, they are sent
+     * once they are due
+     * @param client the client
+     * @param due the time the next held back update is due
+     * @param add true if the client is not waiting for the timer yet
+     */
+    void scheduleTimer(McscpClient client, long due, boolean add) {
+        if (add)
+            mTimedClients.add(client);
+        mNextTimer = Math.min(mNextTimer, due);
+    }
+
+    /**
+     * Remembers a console command that collects output, its reply is sent once
+     * the output window closes
+     * @param output the output of the command
+     */
+    void scheduleOutputWindow(McscpConsoleOutput output) {
+        mOutputWindows.add(output);
+        mNextTimer = Math.min(mNextTimer, output.windowEnd());
+    }
+
+    /**
+     * Sends the log lines waiting in the ring, followed by the number of lines
+     * the ring had no room for
+     */
+    private void drainLogs() {
+        mLogRing.drain(mLogHandler);
+
+        long dropped = mLogRing.takeDropped();
+        if (dropped != 0)
+            broadcast(McscpClient.Flag.SendServerLog, McscpMessage.logDroppedEvent(dropped));
+    }
+
+    /**
+     * Formats a log line, keeps it in the backlog and sends it. The time is only
+     * formatted once per minute
+     * @param time the time of the line in milliseconds
+     * @param level the log level
+     * @param message the message
+     */
+    private void sendLog(long time, String level, String message) {
+        long minute = time / 60000;
+        if (minute != mLogMinute) {
+            mLogMinute = minute;
+            mLogTime = mLogTimeFormat.format(new Date(time));
+        }
+
+        String line = mLogTime + " [" + level + "] " + message;
+        mLogBacklog.add(line);
+
+        if (!mClients.isEmpty())
+            broadcast(McscpClient.Flag.SendServerLog, McscpMessage.logEvent(line));
+    }
+
+    /**
+     * Sends the newest lines of the log backlog to a client in one message,
+     * called by the network side
+     * @param client the client
+     * @param lines the most lines to send
+     * @param id the request id to put in the reply, or null
+     */
+    void sendLogBacklog(McscpClient client, int lines, String id) {
+        client.send(null, mLogBacklog.toMessage(lines, client.protocol(), id));
+    }
+
+    /**
+     * Sends the held back updates and the console command replies that are due
+     */
+    private void runTimers() {
+        if (System.nanoTime() < mNextTimer)
+            return;
+
+        long now = System.nanoTime();
+        mNextTimer = Long.MAX_VALUE;
+
+        Iterator<McscpClient> clients = mTimedClients.iterator();
+        while (clients.hasNext()) {
+            McscpClient client = clients.next();
+            long nextDue = client.isOpen() ? client.releaseHeldUpdates(now) : Long.MAX_VALUE;
+
+            if (nextDue == Long.MAX_VALUE)
+                clients.remove();
+            else
+                mNextTimer = Math.min(mNextTimer, nextDue);
+        }
+
+        Iterator<McscpConsoleOutput> outputs = mOutputWindows.iterator();
+        while (outputs.hasNext()) {
+            McscpConsoleOutput output = outputs.next();
+
+            if (now - output.windowEnd() >= 0) {
+                output.closeWindow();
+                outputs.remove();
+            } else {
+                mNextTimer = Math.min(mNextTimer, output.windowEnd());
             }
         }
+    }
 
-        mTickCount++;
+    /**
+     * Writes out everything the clients have queued during this round, only
+     * clients with pending output are touched. Backed up clients are not
+     * flushed, but their queues are checked against the cap
+     */
+    private void flushClients() {
+        checkBackedUpClients();
+
+        if (mPendingOutput.isEmpty())
+            return;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < mPendingOutput.size(); i++) {
+            McscpClient client = mPendingOutput.get(i);
+
+            if (client.isOpen() && !client.flush())
+                dropClient(client);
+        }
+
+        mPendingOutput.clear();
+        mTickStats.record(McscpTickStats.Phase.Flush, System.nanoTime() - start);
+    }
+
+    /**
+     * Applies the queue cap to clients that wait for the socket, a stalled
+     * client never becomes writable and would not be checked otherwise
+     */
+    private void checkBackedUpClients() {
+        Iterator<McscpClient> clients = mBackedUpClients.iterator();
+        while (clients.hasNext()) {
+            McscpClient client = clients.next();
+
+            if (!client.isOpen() || !client.isBackedUp()) {
+                clients.remove();
+            } else if (!client.checkQueueCap()) {
+                clients.remove();
+                dropClient(client);
+            }
+        }
+    }
+
+    /**
+     * Runs every task currently in a queue
+     * @param tasks the queue to drain
+     */
+    private void runTasks(Queue<Runnable> tasks) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException error) {
+                mFetcher.logMessage(Level.SEVERE, "ERROR: Exception while running a queued task: " + error);
+            }
+        }
     }
 
     /**
@@ -101,6 +687,10 @@ public class McscpTcpServer {
         return mSelector;
     }
 
+    public IMcscpServerConfig getConfig() {
+        return mConfig;
+    }
+
     public IMcscpDataFetcher getDataFetcher() {
         return mFetcher;
     }
@@ -113,6 +703,16 @@ public class McscpTcpServer {
      * Start the listen server and wait for incoming connections
      */
     public void start() {
+        if (mHistory != null) {
+            try {
+                mHistory.start();
+            } catch (IOException error) {
+                mFetcher.logMessage(Level.SEVERE, "ERROR: IOException while opening the history file: " +
+                        mConfig.getHistoryFile());
+                mHistory = null;
+            }
+        }
+
         try {
             //Create a selector
             mSelector = Selector.open();
@@ -125,6 +725,13 @@ public class McscpTcpServer {
 
             mFetcher.logMessage(Level.INFO,"TCP server online at address: " + mAddress.getHostName() +
                               " and port: " + mAddress.getPort());
+
+            if (mThreaded) {
+                mRunning = true;
+                mNetworkThread = new Thread(this::runNetworkLoop, "MCSCP Network");
+                mNetworkThread.setDaemon(true);
+                mNetworkThread.start();
+            }
         } catch (IOException error) {
             mFetcher.logMessage(Level.SEVERE,"ERROR: IOException while starting TCP server on address: " +
                     mAddress.getHostName() + " and port: " + mAddress.getPort());
@@ -135,8 +742,25 @@ public class McscpTcpServer {
      * Stop the listen server and disconnect all existing clients
      */
     public void stop() {
+        //Shut the network thread down first so that we own the clients again
+        if (mNetworkThread != null) {
+            mRunning = false;
+            mSelector.wakeup();
+
+            try {
+                mNetworkThread.join();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+
+            mNetworkThread = null;
+        }
+
         closeServer();
 
+        if (mHistory != null)
+            mHistory.stop();
+
         //Make a copy of the clients so that we can remove them as we loop
         List<McscpClient> clients = new ArrayList<>(mClients.values());
 
@@ -149,30 +773,54 @@ public class McscpTcpServer {
             mFetcher.logMessage(Level.SEVERE,"ERROR: IOException while closing server");
         }
 
+        mFetcher.logMessage(Level.INFO, "Event delivery latency: " + mEventLatency);
         mFetcher.logMessage(Level.INFO,"TCP server offline. Goodbye!");
     }
 
+    /**
+     * Sends the current contents of every table to a client as a single snapshot.
+     * The tables are copied on the tick thread and sent from the network side,
+     * both the copy and the encoded snapshot are reused until a table changes
+     * @param client the client to send to
+     */
     public void requestAllTableData(McscpClient client) {
-        Map<McscpServerTable.Key, String> serverData = mServerTable.getAllData();
-        for (McscpServerTable.Key key : serverData.keySet())
-            client.serverTableUpdate(key, serverData.get(key));
-
-        Set<Map.Entry<String, McscpPlayerTable>> entrySet = mPlayerTables.entrySet();
-        for (Map.Entry<String, McscpPlayerTable> entry : entrySet) {
-            Map<McscpPlayerTable.Key, String> playerData = entry.getValue().getAllData();
-            for (McscpPlayerTable.Key key : playerData.keySet())
-                client.playerTableUpdate(entry.getKey(), key, playerData.get(key));
-        }
+        runOnTickThread(() -> {
+            if (mSnapshotVersion != mTableVersion) {
+                mSnapshotVersion = mTableVersion;
+
+                mSnapshotServerData = mServerTable.getAllData();
+
+                mSnapshotPlayerData = new HashMap<>();
+                for (Map.Entry<String, McscpPlayerTable> entry : mPlayerTables.entrySet())
+                    mSnapshotPlayerData.put(entry.getKey(), entry.getValue().getAllData());
+            }
+
+            Map<McscpServerTable.Key, McscpTableValue> serverData = mSnapshotServerData;
+            Map<String, Map<McscpPlayerTable.Key, McscpTableValue>> playerData = mSnapshotPlayerData;
+
+            runOnNetworkThread(() -> {
+                if (!client.isOpen())
+                    return;
+
+                if (mSnapshotSource != playerData) {
+                    mSnapshotSource = playerData;
+                    mSnapshot = buildSnapshot(serverData, playerData);
+                }
+
+                client.send(null, mSnapshot);
+            });
+        });
     }
 
-    public void serverTableUpdate(McscpServerTable.Key key, String valueString) {
-        for (McscpClient client : mClients.values())
-            client.serverTableUpdate(key, valueString);
+    public void serverTableUpdate(McscpServerTable.Key key, McscpTableValue value) {
+        mTableVersion++;
+        runOnNetworkThread(() -> broadcast(null, McscpMessage.serverTableUpdate(key, value)));
     }
 
-    public void playerTableUpdate(String uuid, McscpPlayerTable.Key key, String valueString) {
-        for (McscpClient client : mClients.values())
-            client.playerTableUpdate(uuid, key, valueString);
+    public void playerTableUpdate(String uuid, McscpPlayerTable.Key key, McscpTableValue value) {
+        mTableVersion++;
+        runOnNetworkThread(() -> mRouter.tableUpdate(uuid, key, value,
+                McscpMessage.playerTableUpdate(uuid, sessionId(uuid), key, value)));
     }
 
     /**
@@ -182,38 +830,114 @@ public class McscpTcpServer {
     public void dropClient(McscpClient client) {
         client.close();
         mClients.remove(client.key());
+        mRouter.removeClient(client);
+        mClientCount = mClients.size();
+        updateSubscriptions();
     }
 
     public void playerJoinEvent(String uuid) {
-        for (McscpClient client : mClients.values())
-            client.playerJoinEvent(uuid);
+        mTableVersion++;
+        runOnNetworkThread(() -> mRouter.playerJoined(uuid, sessionId(uuid), McscpMessage.playerJoinEvent(uuid)));
 
         McscpPlayerTable table = new McscpPlayerTable(uuid, mFetcher, this);
         mPlayerTables.put(uuid, table);
         table.updateKeys();
     }
 
-    public void playerLeaveEvent(String uuid) {
+    /**
+     * Marks a player key as changed, it is read and diffed on the next table update
+     * @param uuid the uuid of the player
+     * @param key the key that changed
+     */
+    public void playerKeyChanged(String uuid, McscpPlayerTable.Key key) {
+        McscpPlayerTable table = mPlayerTables.get(uuid);
+        if (table != null)
+            table.markDirty(key);
+    }
 
+    public void playerLeaveEvent(String uuid) {
+        mTableVersion++;
         mPlayerTables.remove(uuid);
 
-        for (McscpClient client : mClients.values())
-            client.playerLeaveEvent(uuid);
+        runOnNetworkThread(() -> {
+            mRouter.playerLeft(uuid, McscpMessage.playerLeaveEvent(uuid));
+
+            Integer sessionId = mSessionIds.remove(uuid);
+            if (sessionId != null)
+                broadcast(null, McscpMessage.playerSessionEnd(sessionId));
+        });
     }
 
     public void chatEvent(String uuid, String message) {
-        for (McscpClient client : mClients.values())
-            client.chatEvent(uuid, message);
+        runOnNetworkThread(() -> mRouter.route(uuid, McscpClient.Flag.ReportChat, McscpMessage.chatEvent(uuid, message)));
     }
 
     public void deathEvent(String uuid, String message) {
-        for (McscpClient client : mClients.values())
-            client.deathEvent(uuid, message);
+        runOnNetworkThread(() -> mRouter.route(uuid, McscpClient.Flag.ReportPlayerDeath, McscpMessage.deathEvent(uuid, message)));
+    }
+
+    /**
+     * Queues a log line for the clients and the backlog, may be called from any
+     * thread and never blocks. Lines that do not fit are counted and reported
+     * to the clients
+     * @param time the time of the line in milliseconds
+     * @param level the log level
+     * @param message the message
+     */
+    public void logEvent(long time, String level, String message) {
+        if (mLogRing.add(time, level, message))
+            startBatch();
     }
 
-    public void logEvent(String newData) {
+    /**
+     * Sends a message to every client, the message is only encoded once
+     * @param flag the session flag a client must have enabled, or null for all clients
+     * @param message the message
+     */
+    private void broadcast(McscpClient.Flag flag, McscpMessage message) {
         for (McscpClient client : mClients.values())
-            client.logEvent(newData);
+            client.send(flag, message);
+    }
+
+    /**
+     * Builds the snapshot message from a copy of the tables
+     * @param serverData the server table
+     * @param playerData the player tables by uuid
+     * @return the snapshot
+     */
+    private McscpMessage buildSnapshot(Map<McscpServerTable.Key, McscpTableValue> serverData,
+                                       Map<String, Map<McscpPlayerTable.Key, McscpTableValue>> playerData) {
+        List<McscpMessage> parts = new ArrayList<>();
+
+        for (Map.Entry<McscpServerTable.Key, McscpTableValue> entry : serverData.entrySet())
+            parts.add(McscpMessage.serverTableUpdate(entry.getKey(), entry.getValue()));
+
+        for (Map.Entry<String, Map<McscpPlayerTable.Key, McscpTableValue>> player : playerData.entrySet()) {
+            String uuid = player.getKey();
+            int sessionId = sessionId(uuid);
+
+            parts.add(McscpMessage.playerSession(uuid, sessionId));
+            for (Map.Entry<McscpPlayerTable.Key, McscpTableValue> entry : player.getValue().entrySet())
+                parts.add(McscpMessage.playerTableUpdate(uuid, sessionId, entry.getKey(), entry.getValue()));
+        }
+
+        return McscpMessage.snapshot(parts);
+    }
+
+    /**
+     * Gets the session id of a player, a new id is announced to every client
+     * @param uuid the uuid of the player
+     * @return the session id
+     */
+    private int sessionId(String uuid) {
+        Integer sessionId = mSessionIds.get(uuid);
+        if (sessionId == null) {
+            sessionId = mNextSessionId++;
+            mSessionIds.put(uuid, sessionId);
+            broadcast(null, McscpMessage.playerSession(uuid, sessionId));
+        }
+
+        return sessionId;
     }
 
     /**
@@ -232,6 +956,9 @@ public class McscpTcpServer {
             SelectionKey clientKey = channel.register(mSelector, SelectionKey.OP_READ);
             McscpClient client = new McscpClient(this, channel, clientKey);
             mClients.put(clientKey, client);
+            mRouter.addClient(client);
+            mClientCount = mClients.size();
+            updateSubscriptions();
             client.startHandshake();
         } catch (IOException error) {
             mFetcher.logMessage(Level.SEVERE,"ERROR: IOException while accepting client connection");
@@ -253,7 +980,8 @@ public class McscpTcpServer {
      */
     private void writeEvent(SelectionKey key) {
         McscpClient client = mClients.get(key);
-        client.writeEvent();
+        if (!client.writeEvent())
+            dropClient(client);
     }
 
     /**
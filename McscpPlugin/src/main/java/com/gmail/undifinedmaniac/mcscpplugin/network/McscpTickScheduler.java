@@ -0,0 +1,178 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs the work clients hand to the server tick within a time budget. Every
+ * client has its own queue and the clients take turns one task at a time, so a
+ * client that sends a burst of commands cannot hold back the others. Once the
+ * budget of a tick is spent the remaining work waits for the next tick, at
+ * least one task runs per tick so the queue always makes progress. The work of
+ * a client that has disconnected is thrown away once its turn comes
+ *
+ * The network side submits work through a lock-free queue, everything else is
+ * only touched by the tick
+ */
+public class McscpTickScheduler {
+
+    /**
+     * The queued work of one client
+     */
+    private static class ClientQueue {
+        final McscpClient client;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        ClientQueue(McscpClient client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * Work on its way from the network side to the tick
+     */
+    private static class Submission {
+        final McscpClient client;
+        final Runnable task;
+
+        Submission(McscpClient client, Runnable task) {
+            this.client = client;
+            this.task = task;
+        }
+    }
+
+    private IMcscpDataFetcher mFetcher;
+    private long mBudget;
+    private Queue<Submission> mSubmitted = new ConcurrentLinkedQueue<>();
+
+    //The clients with queued work in the order of their next turn
+    private Map<McscpClient, ClientQueue> mQueues = new HashMap<>();
+    private ArrayDeque<ClientQueue> mTurns = new ArrayDeque<>();
+    private int mQueueLength = 0;
+
+    //The current window and the last complete one, for the table keys
+    private int mWindowDeferred = 0;
+    private float mWindowPeakUse = 0;
+    private int mDeferred = 0;
+    private float mBudgetUse = 0;
+
+    /**
+     * @param fetcher the data fetcher to log errors through
+     * @param budget the time client work may take per tick in nanoseconds
+     */
+    McscpTickScheduler(IMcscpDataFetcher fetcher, long budget) {
+        mFetcher = fetcher;
+        mBudget = Math.max(0, budget);
+    }
+
+    /**
+     * Queues work of a client, called by the network side
+     * @param client the client
+     * @param task the work to run on the tick
+     */
+    void submit(McscpClient client, Runnable task) {
+        mSubmitted.add(new Submission(client, task));
+    }
+
+    /**
+     * Runs queued work until the budget is spent, called by the tick
+     * @return the time spent in nanoseconds
+     */
+    long run() {
+        Submission submission;
+        while ((submission = mSubmitted.poll()) != null) {
+            ClientQueue queue = mQueues.get(submission.client);
+            if (queue == null) {
+                queue = new ClientQueue(submission.client);
+                mQueues.put(submission.client, queue);
+                mTurns.add(queue);
+            }
+
+            queue.tasks.add(submission.task);
+            mQueueLength++;
+        }
+
+        if (mQueueLength == 0)
+            return 0;
+
+        long start = System.nanoTime();
+        long used = 0;
+        boolean ran = false;
+        while (mQueueLength != 0 && (!ran || used < mBudget)) {
+            ClientQueue queue = mTurns.poll();
+
+            //A client that has disconnected loses its work without using the budget
+            if (!queue.client.isOpen()) {
+                mQueueLength -= queue.tasks.size();
+                mQueues.remove(queue.client);
+                continue;
+            }
+
+            Runnable task = queue.tasks.poll();
+            mQueueLength--;
+
+            //A client with more work goes to the back, an idle one is forgotten
+            if (queue.tasks.isEmpty())
+                mQueues.remove(queue.client);
+            else
+                mTurns.add(queue);
+
+            try {
+                task.run();
+            } catch (RuntimeException error) {
+                mFetcher.logMessage(Level.SEVERE, "ERROR: Exception while running a client command: " + error);
+            }
+
+            ran = true;
+            used = System.nanoTime() - start;
+        }
+
+        mWindowDeferred += mQueueLength;
+        if (mBudget != 0)
+            mWindowPeakUse = Math.max(mWindowPeakUse, used * 100f / mBudget);
+        return used;
+    }
+
+    /**
+     * Starts a new window for the table keys, called by the tick before the
+     * server table is refreshed
+     */
+    void startWindow() {
+        mDeferred = mWindowDeferred;
+        mBudgetUse = Math.round(mWindowPeakUse * 10) / 10f;
+        mWindowDeferred = 0;
+        mWindowPeakUse = 0;
+    }
+
+    /**
+     * Gets the number of tasks still waiting after the last tick
+     * @return the number of tasks
+     */
+    public int getQueueLength() {
+        return mQueueLength;
+    }
+
+    /**
+     * Gets how often tasks had to wait for a later tick during the last window,
+     * a task that waits two ticks counts twice
+     * @return the number of deferrals
+     */
+    public int getDeferred() {
+        return mDeferred;
+    }
+
+    /**
+     * Gets the largest share of the budget a single tick used during the last
+     * window, it can exceed 100 since a task is never interrupted
+     * @return the share in percent
+     */
+    public float getBudgetUse() {
+        return mBudgetUse;
+    }
+}
@@ -0,0 +1,131 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+/**
+ * Times the phases of the plugin's own work. Every phase is recorded by one
+ * side only: the tick phases by the tick, the network phases by whoever runs
+ * the network side (the tick too without a network thread). Phases nest, Tick
+ * is the whole of processEvents() and ClientWork includes Commands. STATS is
+ * answered by the network side with a copy of the tick phases
+ *
+ * A phase is only recorded when it had work to do, so its percentiles are not
+ * flattened by idle ticks. All accumulators are allocated up front
+ */
+public class McscpTickStats {
+
+    public enum Phase {
+        Tick(false), TickTasks(false), ClientWork(false), Commands(false), ServerTable(false),
+        PlayerTables(false), NetworkIo(true), NetworkTasks(true), Flush(true);
+
+        private final boolean mNetwork;
+
+        Phase(boolean network) {
+            mNetwork = network;
+        }
+
+        /**
+         * Checks if the phase is recorded by the network side
+         * @return true for network phases, false for tick phases
+         */
+        public boolean isNetworkPhase() {
+            return mNetwork;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private McscpLatencyStats[] mPhases = new McscpLatencyStats[PHASES.length];
+
+    //The whole tick since the server table was last refreshed, for the table keys
+    private long mRecentTotal = 0;
+    private long mRecentCount = 0;
+    private long mRecentMax = 0;
+    private int mRecentMean = 0;
+    private int mRecentPeak = 0;
+
+    McscpTickStats() {
+        for (int i = 0; i < mPhases.length; i++)
+            mPhases[i] = new McscpLatencyStats();
+    }
+
+    /**
+     * Adds the duration of a phase
+     * @param phase the phase
+     * @param nanos the duration in nanoseconds
+     */
+    void record(Phase phase, long nanos) {
+        mPhases[phase.ordinal()].record(nanos);
+
+        if (phase == Phase.Tick) {
+            mRecentTotal += nanos;
+            mRecentCount++;
+            mRecentMax = Math.max(mRecentMax, nanos);
+        }
+    }
+
+    /**
+     * Starts a new window for the table keys, called by the tick before the
+     * server table is refreshed
+     */
+    void startWindow() {
+        mRecentMean = mRecentCount == 0 ? 0 : (int) (mRecentTotal / mRecentCount / 1000);
+        mRecentPeak = (int) (mRecentMax / 1000);
+        mRecentTotal = 0;
+        mRecentCount = 0;
+        mRecentMax = 0;
+    }
+
+    /**
+     * Gets the mean time processEvents() took during the last window
+     * @return the time in microseconds
+     */
+    public int getRecentMean() {
+        return mRecentMean;
+    }
+
+    /**
+     * Gets the longest time processEvents() took during the last window
+     * @return the time in microseconds
+     */
+    public int getRecentMax() {
+        return mRecentPeak;
+    }
+
+    public McscpLatencyStats getPhase(Phase phase) {
+        return mPhases[phase.ordinal()];
+    }
+
+    /**
+     * Copies the tick phases, called by the tick
+     * @return the copies indexed by phase ordinal, null for network phases
+     */
+    McscpLatencyStats[] copyTickPhases() {
+        McscpLatencyStats[] copies = new McscpLatencyStats[PHASES.length];
+        for (Phase phase : PHASES) {
+            if (!phase.isNetworkPhase())
+                copies[phase.ordinal()] = mPhases[phase.ordinal()].copy();
+        }
+
+        return copies;
+    }
+
+    /**
+     * Builds the reply to a STATS command, a header line followed by one line
+     * per phase with its count, total time and percentiles. Called by the
+     * network side, which reads its own phases directly
+     * @param tickPhases the tick phases copied by copyTickPhases()
+     * @return the reply
+     */
+    String report(McscpLatencyStats[] tickPhases) {
+        StringBuilder report = new StringBuilder(String.format("[STATS]:[PHASES:%d]", PHASES.length));
+
+        for (Phase phase : PHASES) {
+            McscpLatencyStats stats = phase.isNetworkPhase() ? mPhases[phase.ordinal()] : tickPhases[phase.ordinal()];
+            report.append(String.format("\r\n[PHASE]:[NAME:%s]:[COUNT:%d]:[TOTALMS:%d]:[MEANUS:%d]:[P50US:%d]:" +
+                            "[P95US:%d]:[P99US:%d]:[MAXUS:%d]", phase.name().toUpperCase(), stats.getCount(),
+                    stats.getTotal() / 1000000, stats.getMean() / 1000, stats.getPercentile(50) / 1000,
+                    stats.getPercentile(95) / 1000, stats.getPercentile(99) / 1000, stats.getMax() / 1000));
+        }
+
+        return report.toString();
+    }
+}
@@ -4,44 +4,128 @@ import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpDataFetcher;
 import com.gmail.undifinedmaniac.mcscpplugin.interfaces.IMcscpPlayerData;
 import com.gmail.undifinedmaniac.mcscpplugin.network.McscpTcpServer;
 
+/**
+ * The table for a single player. Keys are only read again once they are marked
+ * dirty (by game events) or their safety poll is due
+ */
 public class McscpPlayerTable extends McscpTableBase<McscpPlayerTable.Key> {
     private String mUuid;
     private McscpTcpServer mServer;
     private IMcscpPlayerData mPlayer;
 
-    public enum Key {
-        Name, DisplayName, Ip, World, MaxHealth,
-        Health, Hunger, Level
+    private boolean[] mDirty;
+    private int[] mPollIntervals;
+    private long[] mNextPoll;
+
+    public enum Key implements TableKey {
+        Name(ValueType.Text), DisplayName(ValueType.Text), Ip(ValueType.Text),
+        World(ValueType.Text), MaxHealth(ValueType.Decimal), Health(ValueType.Decimal),
+        Hunger(ValueType.Decimal), Level(ValueType.Decimal);
+
+        private final ValueType mValueType;
+
+        Key(ValueType valueType) {
+            mValueType = valueType;
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return mValueType;
+        }
     }
 
+    private static final Key[] KEYS = Key.values();
+
     public McscpPlayerTable(String uuid, IMcscpDataFetcher fetcher, McscpTcpServer server) {
+        super(Key.class);
         mUuid = uuid;
         mServer = server;
         mPlayer = fetcher.getPlayerData(uuid);
+
+        mDirty = new boolean[KEYS.length];
+        mPollIntervals = new int[KEYS.length];
+        mNextPoll = new long[KEYS.length];
+        for (Key key : KEYS) {
+            mPollIntervals[key.ordinal()] = server.getConfig().getPlayerPollInterval(key);
+            setChangeThreshold(key, server.getConfig().getPlayerChangeThreshold(key));
+        }
     }
 
+    /**
+     * Reads every key
+     */
     public void updateKeys() {
-        String name = mPlayer.getName();
-        String displayName = mPlayer.getDisplayName();
-        String ip = mPlayer.getIpAddress();
-        String world = mPlayer.getWorld();
-        String maxHealth = String.valueOf(mPlayer.getMaxHealth());
-        String health = String.valueOf(mPlayer.getHealth());
-        String hunger = String.valueOf(mPlayer.getHunger());
-        String level = String.valueOf(mPlayer.getLevel());
-
-        updateKeysHelper(Key.Name, name);
-        updateKeysHelper(Key.DisplayName, displayName);
-        updateKeysHelper(Key.Ip, ip);
-        updateKeysHelper(Key.World, world);
-        updateKeysHelper(Key.MaxHealth, maxHealth);
-        updateKeysHelper(Key.Health, health);
-        updateKeysHelper(Key.Hunger, hunger);
-        updateKeysHelper(Key.Level, level);
+        for (Key key : KEYS)
+            updateKeysHelper(key, readKey(key));
+    }
+
+    /**
+     * Marks a key as changed so that it is read on the next update
+     * @param key the key
+     */
+    public void markDirty(Key key) {
+        mDirty[key.ordinal()] = true;
+    }
+
+    /**
+     * Reads the keys that were marked dirty and the keys that are due for their
+     * safety poll. Keys nobody is subscribed to stay dirty until they are wanted
+     * @param tick the current tick
+     */
+    public void updateDirtyKeys(long tick) {
+        for (Key key : KEYS) {
+            if (!mServer.isSubscribed(key))
+                continue;
+
+            int index = key.ordinal();
+            boolean read = mDirty[index];
+
+            //The first poll is scheduled one interval after the table starts
+            int interval = mPollIntervals[index];
+            if (interval > 0) {
+                if (mNextPoll[index] == 0) {
+                    mNextPoll[index] = tick + interval;
+                } else if (tick >= mNextPoll[index]) {
+                    mNextPoll[index] = tick + interval;
+                    read = true;
+                }
+            }
+
+            if (read) {
+                mDirty[index] = false;
+                updateKeysHelper(key, readKey(key));
+            }
+        }
+    }
+
+    /**
+     * Reads a key from the player and stores it
+     * @param key the key
+     * @return true if the value changed
+     */
+    private boolean readKey(Key key) {
+        switch (key) {
+            case Name:
+                return updateKey(key, mPlayer.getName());
+            case DisplayName:
+                return updateKey(key, mPlayer.getDisplayName());
+            case Ip:
+                return updateKey(key, mPlayer.getIpAddress());
+            case World:
+                return updateKey(key, mPlayer.getWorld());
+            case MaxHealth:
+                return updateKey(key, mPlayer.getMaxHealth());
+            case Health:
+                return updateKey(key, mPlayer.getHealth());
+            case Hunger:
+                return updateKey(key, mPlayer.getHunger());
+            default:
+                return updateKey(key, mPlayer.getLevel());
+        }
     }
 
-    private void updateKeysHelper(Key key, String value) {
-        if (updateKey(key, value))
-            mServer.playerTableUpdate(mUuid, key, value);
+    private void updateKeysHelper(Key key, boolean changed) {
+        if (changed)
+            mServer.playerTableUpdate(mUuid, key, getValue(key));
     }
 }
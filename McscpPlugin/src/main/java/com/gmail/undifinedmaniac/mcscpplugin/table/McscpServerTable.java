@@ -7,37 +7,100 @@ public class McscpServerTable extends McscpTableBase<McscpServerTable.Key> {
     private IMcscpDataFetcher mFetcher;
     private McscpTcpServer mServer;
 
-    public enum Key {
-        MaxPlayers, PlayerCount, Motd, Tps, MaxRam,
-        TotalRam, UsedRam
+    public enum Key implements TableKey {
+        MaxPlayers(ValueType.Int), PlayerCount(ValueType.Int), Motd(ValueType.Text),
+        Tps(ValueType.Decimal), MaxRam(ValueType.Decimal), TotalRam(ValueType.Decimal),
+        UsedRam(ValueType.Decimal), Tps1m(ValueType.Decimal), Tps5m(ValueType.Decimal),
+        Tps15m(ValueType.Decimal), TickIntervalMean(ValueType.Decimal),
+        TickIntervalP50(ValueType.Decimal), TickIntervalP95(ValueType.Decimal),
+        TickIntervalP99(ValueType.Decimal), TickIntervalMax(ValueType.Decimal),
+        PluginTickMicros(ValueType.Int), PluginTickMaxMicros(ValueType.Int),
+        EventLatencyMicros(ValueType.Int), EventLatencyMaxMicros(ValueType.Int),
+        CommandQueue(ValueType.Int), CommandsDeferred(ValueType.Int), CommandBudgetUse(ValueType.Decimal);
+
+        private final ValueType mValueType;
+
+        Key(ValueType valueType) {
+            mValueType = valueType;
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return mValueType;
+        }
     }
 
     public McscpServerTable(IMcscpDataFetcher fetcher, McscpTcpServer server) {
-        super();
+        super(Key.class);
         mFetcher = fetcher;
         mServer = server;
+
+        for (Key key : Key.values())
+            setChangeThreshold(key, server.getConfig().getServerChangeThreshold(key));
     }
 
+    /**
+     * Reads every key that at least one client is subscribed to or that is
+     * recorded in the history
+     */
     public void updateKeys() {
-        String maxPlayers = String.valueOf(mFetcher.getMaxPlayers());
-        String playerCount = String.valueOf(mFetcher.getPlayerCount());
-        String motd = String.valueOf(mFetcher.getMotd());
-        String tps = String.valueOf(mFetcher.getTps());
-        String maxRam = String.valueOf(mFetcher.getMaxRam());
-        String totalRam = String.valueOf(mFetcher.getTotalRam());
-        String usedRam = String.valueOf(mFetcher.getUsedRam());
-
-        updateKeysHelper(Key.MaxPlayers, maxPlayers);
-        updateKeysHelper(Key.PlayerCount, playerCount);
-        updateKeysHelper(Key.Motd, motd);
-        updateKeysHelper(Key.Tps, tps);
-        updateKeysHelper(Key.MaxRam, maxRam);
-        updateKeysHelper(Key.TotalRam, totalRam);
-        updateKeysHelper(Key.UsedRam, usedRam);
+        for (Key key : Key.values()) {
+            if ((mServer.isSubscribed(key) || mServer.isRecorded(key)) && readKey(key))
+                mServer.serverTableUpdate(key, getValue(key));
+        }
     }
 
-    private void updateKeysHelper(Key key, String value) {
-        if (updateKey(key, value))
-            mServer.serverTableUpdate(key, value);
+    /**
+     * Reads a key from the server and stores it
+     * @param key the key
+     * @return true if the value changed
+     */
+    private boolean readKey(Key key) {
+        switch (key) {
+            case MaxPlayers:
+                return updateKey(key, mFetcher.getMaxPlayers());
+            case PlayerCount:
+                return updateKey(key, mFetcher.getPlayerCount());
+            case Motd:
+                return updateKey(key, String.valueOf(mFetcher.getMotd()));
+            case Tps:
+                return updateKey(key, mFetcher.getTps());
+            case MaxRam:
+                return updateKey(key, mFetcher.getMaxRam());
+            case TotalRam:
+                return updateKey(key, mFetcher.getTotalRam());
+            case Tps1m:
+                return updateKey(key, mFetcher.getTps1m());
+            case Tps5m:
+                return updateKey(key, mFetcher.getTps5m());
+            case Tps15m:
+                return updateKey(key, mFetcher.getTps15m());
+            case TickIntervalMean:
+                return updateKey(key, mFetcher.getTickIntervalMean());
+            case TickIntervalP50:
+                return updateKey(key, mFetcher.getTickIntervalP50());
+            case TickIntervalP95:
+                return updateKey(key, mFetcher.getTickIntervalP95());
+            case TickIntervalP99:
+                return updateKey(key, mFetcher.getTickIntervalP99());
+            case TickIntervalMax:
+                return updateKey(key, mFetcher.getTickIntervalMax());
+            case PluginTickMicros:
+                return updateKey(key, mServer.getTickStats().getRecentMean());
+            case PluginTickMaxMicros:
+                return updateKey(key, mServer.getTickStats().getRecentMax());
+            case EventLatencyMicros:
+                return updateKey(key, mServer.getRecentEventLatency());
+            case EventLatencyMaxMicros:
+                return updateKey(key, mServer.getRecentEventLatencyMax());
+            case CommandQueue:
+                return updateKey(key, mServer.getClientWork().getQueueLength());
+            case CommandsDeferred:
+                return updateKey(key, mServer.getClientWork().getDeferred());
+            case CommandBudgetUse:
+                return updateKey(key, mServer.getClientWork().getBudgetUse());
+            default:
+                return updateKey(key, mFetcher.getUsedRam());
+        }
     }
 }
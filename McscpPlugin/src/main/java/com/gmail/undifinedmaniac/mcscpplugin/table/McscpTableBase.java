@@ -1,22 +1,161 @@
 package com.gmail.undifinedmaniac.mcscpplugin.table;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 
-abstract public class McscpTableBase<T> {
-    private Map<T, String> mData = new HashMap<>();
+/**
+ * Stores the values of a table in primitive slots indexed by the key's ordinal.
+ * Numbers are only turned into text once a change is sent to a v1 client
+ */
+abstract public class McscpTableBase<T extends Enum<T> & McscpTableBase.TableKey> {
+
+    /**
+     * The kind of value stored for a key
+     */
+    public enum ValueType {
+        Text, Int, Decimal
+    }
+
+    /**
+     * Implemented by the key enums of the tables
+     */
+    public interface TableKey {
+        ValueType getValueType();
+    }
+
+    private Class<T> mKeyType;
+    private boolean[] mSet;
+    private int[] mInts;
+    private float[] mDecimals;
+    private String[] mTexts;
+    private float[] mThresholds;
+
+    protected McscpTableBase(Class<T> keyType) {
+        int size = keyType.getEnumConstants().length;
+
+        mKeyType = keyType;
+        mSet = new boolean[size];
+        mInts = new int[size];
+        mDecimals = new float[size];
+        mTexts = new String[size];
+        mThresholds = new float[size];
+    }
 
     abstract void updateKeys();
 
-    public Map<T, String> getAllData() {
-        return mData;
+    /**
+     * Copies every value that has been set into a map
+     * @return the values
+     */
+    public Map<T, McscpTableValue> getAllData() {
+        Map<T, McscpTableValue> data = new EnumMap<>(mKeyType);
+        for (T key : mKeyType.getEnumConstants()) {
+            if (mSet[key.ordinal()])
+                data.put(key, getValue(key));
+        }
+
+        return data;
+    }
+
+    /**
+     * Gets a typed copy of the value of a key
+     * @param key the key
+     * @return the value, or null if it has not been set
+     */
+    public McscpTableValue getValue(T key) {
+        int index = key.ordinal();
+        if (!mSet[index])
+            return null;
+
+        switch (key.getValueType()) {
+            case Int:
+                return McscpTableValue.ofInt(mInts[index]);
+            case Decimal:
+                return McscpTableValue.ofDecimal(mDecimals[index]);
+            default:
+                return McscpTableValue.ofText(mTexts[index]);
+        }
+    }
+
+    /**
+     * Gets the value of a key as text
+     * @param key the key
+     * @return the value, or null if it has not been set
+     */
+    public String getValueString(T key) {
+        int index = key.ordinal();
+        if (!mSet[index])
+            return null;
+
+        switch (key.getValueType()) {
+            case Int:
+                return String.valueOf(mInts[index]);
+            case Decimal:
+                return String.valueOf(mDecimals[index]);
+            default:
+                return mTexts[index];
+        }
+    }
+
+    /**
+     * Gets the value of a numeric key
+     * @param key the key
+     * @return the value, 0 for text keys and keys that have not been set
+     */
+    public float getNumericValue(T key) {
+        switch (key.getValueType()) {
+            case Int:
+                return mInts[key.ordinal()];
+            case Decimal:
+                return mDecimals[key.ordinal()];
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Sets how much a number has to change before the change is reported
+     * @param key the key
+     * @param threshold the threshold, 0 reports every change
+     */
+    protected void setChangeThreshold(T key, float threshold) {
+        mThresholds[key.ordinal()] = threshold;
     }
 
     protected boolean updateKey(T key, String value) {
-        boolean replace = !value.equals(mData.get(key));
+        int index = key.ordinal();
+        boolean replace = !mSet[index] || !value.equals(mTexts[index]);
+
+        if (replace) {
+            mTexts[index] = value;
+            mSet[index] = true;
+        }
+
+        return replace;
+    }
+
+    protected boolean updateKey(T key, int value) {
+        int index = key.ordinal();
+        boolean replace = !mSet[index] || Math.abs((long) value - mInts[index]) > mThresholds[index];
+
+        if (replace) {
+            mInts[index] = value;
+            mSet[index] = true;
+        }
+
+        return replace;
+    }
+
+    protected boolean updateKey(T key, float value) {
+        int index = key.ordinal();
+        float previous = mDecimals[index];
+        boolean replace = !mSet[index] ||
+                (Float.compare(value, previous) != 0 && !(Math.abs(value - previous) <= mThresholds[index]));
 
-        if (replace)
-            mData.put(key, value);
+        if (replace) {
+            mDecimals[index] = value;
+            mSet[index] = true;
+        }
 
         return replace;
     }
@@ -0,0 +1,80 @@
+package com.gmail.undifinedmaniac.mcscpplugin.table;
+
+/**
+ * A copy of one table value that keeps its type. Numbers are only turned into
+ * text when a v1 client needs them
+ */
+public final class McscpTableValue {
+
+    private final McscpTableBase.ValueType mType;
+    private final int mInt;
+    private final float mDecimal;
+    private final String mText;
+
+    private McscpTableValue(McscpTableBase.ValueType type, int intValue, float decimal, String text) {
+        mType = type;
+        mInt = intValue;
+        mDecimal = decimal;
+        mText = text;
+    }
+
+    public static McscpTableValue ofInt(int value) {
+        return new McscpTableValue(McscpTableBase.ValueType.Int, value, 0, null);
+    }
+
+    public static McscpTableValue ofDecimal(float value) {
+        return new McscpTableValue(McscpTableBase.ValueType.Decimal, 0, value, null);
+    }
+
+    public static McscpTableValue ofText(String value) {
+        return new McscpTableValue(McscpTableBase.ValueType.Text, 0, 0, value);
+    }
+
+    /**
+     * Gets the type of the value
+     * @return the type
+     */
+    public McscpTableBase.ValueType getType() {
+        return mType;
+    }
+
+    /**
+     * Gets the value of an Int value
+     * @return the value
+     */
+    public int getInt() {
+        return mInt;
+    }
+
+    /**
+     * Gets the value of a Decimal value
+     * @return the value
+     */
+    public float getDecimal() {
+        return mDecimal;
+    }
+
+    /**
+     * Gets the value of a Text value
+     * @return the value
+     */
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * Formats the value the way the text protocol sends it
+     * @return the value as text
+     */
+    @Override
+    public String toString() {
+        switch (mType) {
+            case Int:
+                return String.valueOf(mInt);
+            case Decimal:
+                return String.valueOf(mDecimal);
+            default:
+                return String.valueOf(mText);
+        }
+    }
+}
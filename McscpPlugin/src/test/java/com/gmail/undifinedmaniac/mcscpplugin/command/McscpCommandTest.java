@@ -0,0 +1,163 @@
+package com.gmail.undifinedmaniac.mcscpplugin.command;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the single-pass command parser
+ */
+public class McscpCommandTest {
+
+    private static McscpCommand parse(String line) {
+        return new McscpCommand(null, line);
+    }
+
+    @Test
+    public void parsesCommandWithoutFields() {
+        McscpCommand command = parse("[PING]");
+
+        assertEquals(McscpCommand.CommandType.Ping, command.getType());
+        assertNull(command.getId());
+    }
+
+    @Test
+    public void parsesFieldsInOrder() {
+        McscpCommand command = parse("[SETFLAG]:[NAME:CmdResponse]:[VALUE:true]");
+
+        assertEquals(McscpCommand.CommandType.SetFlag, command.getType());
+        assertEquals("CmdResponse", command.getField(0));
+        assertEquals("true", command.getField(1));
+    }
+
+    @Test
+    public void readsIdRightAfterTag() {
+        McscpCommand command = parse("[CMD]:[ID:7]:[CONTENT:list]");
+
+        assertEquals(McscpCommand.CommandType.Console, command.getType());
+        assertEquals("7", command.getId());
+        assertEquals("list", command.getField(0));
+    }
+
+    @Test
+    public void readsIdOfCommandWithoutFields() {
+        McscpCommand command = parse("[PING]:[ID:abc]");
+
+        assertEquals(McscpCommand.CommandType.Ping, command.getType());
+        assertEquals("abc", command.getId());
+    }
+
+    @Test
+    public void rejectsEmptyId() {
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[PING]:[ID:]").getType());
+    }
+
+    @Test
+    public void idAfterLastFieldIsPartOfValue() {
+        McscpCommand command = parse("[CMD]:[CONTENT:list]:[ID:7]");
+
+        assertNull(command.getId());
+        assertEquals("list]:[ID:7", command.getField(0));
+    }
+
+    @Test
+    public void lastFieldRunsToFinalBracket() {
+        McscpCommand command = parse("[CMD]:[CONTENT:say [hi]:[there]]");
+
+        assertEquals(McscpCommand.CommandType.Console, command.getType());
+        assertEquals("say [hi]:[there]", command.getField(0));
+    }
+
+    @Test
+    public void earlierFieldEndsAtNextFieldName() {
+        McscpCommand command = parse("[MSG]:[SENDER:a]b]:[CONTENT:hi]");
+
+        assertEquals(McscpCommand.CommandType.Chat, command.getType());
+        assertEquals("a]b", command.getField(0));
+        assertEquals("hi", command.getField(1));
+    }
+
+    @Test
+    public void acceptsEmptyLastField() {
+        McscpCommand command = parse("[FILTER]:[TYPE:NONE]:[VALUE:]");
+
+        assertEquals(McscpCommand.CommandType.Filter, command.getType());
+        assertEquals("", command.getField(1));
+    }
+
+    @Test
+    public void unknownTagIsUnknown() {
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[NOPE]:[CONTENT:x]").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[PIN]").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[PINGS]").getType());
+    }
+
+    @Test
+    public void unknownTagKeepsId() {
+        McscpCommand command = parse("[NOPE]:[ID:3]:[CONTENT:x]");
+
+        assertEquals(McscpCommand.CommandType.Unknown, command.getType());
+        assertEquals("3", command.getId());
+    }
+
+    @Test
+    public void missingFieldIsUnknown() {
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[CMD]").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[MSG]:[SENDER:bob]").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[MSG]:[CONTENT:hi]").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[HISTORY]:[KEY:TPS]:[TO:2]").getType());
+    }
+
+    @Test
+    public void unterminatedFieldIsUnknown() {
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[CMD]:[CONTENT:list").getType());
+    }
+
+    @Test
+    public void trailingDataAfterFieldlessCommandIsUnknown() {
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[PING]:[EXTRA:1]").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[STOP] now").getType());
+    }
+
+    @Test
+    public void lineWithoutTagIsUnknown() {
+        assertEquals(McscpCommand.CommandType.Unknown, parse("").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("PING").getType());
+        assertEquals(McscpCommand.CommandType.Unknown, parse("[PING").getType());
+    }
+
+    @Test
+    public void tagsAndFieldNamesIgnoreCase() {
+        McscpCommand command = parse("[msg]:[id:2]:[Sender:bob]:[content:Hi]");
+
+        assertEquals(McscpCommand.CommandType.Chat, command.getType());
+        assertEquals("2", command.getId());
+        assertEquals("bob", command.getField(0));
+        assertEquals("Hi", command.getField(1));
+    }
+
+    @Test
+    public void peeksTypeAndIdWithoutParsing() {
+        assertEquals(McscpCommand.CommandType.Console, McscpCommand.peekType("[cmd]:[CONTENT:list"));
+        assertEquals(McscpCommand.CommandType.Unknown, McscpCommand.peekType("CMD"));
+        assertEquals("9", McscpCommand.peekId("[PING]:[id:9]"));
+        assertNull(McscpCommand.peekId("[PING]"));
+        assertNull(McscpCommand.peekId("[PING]:[ID:]"));
+    }
+
+    @Test
+    public void addsIdAfterFirstTag() {
+        assertEquals("[PONG]:[ID:7]", McscpCommand.addId("[PONG]", "7"));
+        assertEquals("[ERROR]:[ID:1]:[INVALID]", McscpCommand.addId("[ERROR]:[INVALID]", "1"));
+        assertEquals("[PONG]", McscpCommand.addId("[PONG]", null));
+    }
+
+    @Test
+    public void replyCarriesId() {
+        McscpCommand command = parse("[PING]:[ID:5]");
+        command.setReply("[PONG]");
+
+        assertEquals("[PONG]:[ID:5]", command.getReply());
+    }
+}
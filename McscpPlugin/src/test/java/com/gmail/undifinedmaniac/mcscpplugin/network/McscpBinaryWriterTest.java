@@ -0,0 +1,110 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the varint, zigzag and length header encoding of binary frames
+ */
+public class McscpBinaryWriterTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    private static byte[] frame(McscpBinaryWriter writer) {
+        ByteBuffer frame = writer.toFrame();
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the bytes written after the frame type, checking a one byte
+     * length header on the way
+     */
+    private static byte[] body(McscpBinaryWriter writer) {
+        byte[] frame = frame(writer);
+        assertEquals(frame.length - 1, frame[0]);
+        assertEquals(McscpBinaryWriter.TEXT, frame[1]);
+        return Arrays.copyOfRange(frame, 2, frame.length);
+    }
+
+    private static byte[] varInt(int value) {
+        return body(new McscpBinaryWriter(McscpBinaryWriter.TEXT).writeVarInt(value));
+    }
+
+    private static byte[] zigZag(int value) {
+        return body(new McscpBinaryWriter(McscpBinaryWriter.TEXT).writeZigZag(value));
+    }
+
+    @Test
+    public void encodesVarInts() {
+        assertArrayEquals(bytes(0x00), varInt(0));
+        assertArrayEquals(bytes(0x01), varInt(1));
+        assertArrayEquals(bytes(0x7F), varInt(127));
+        assertArrayEquals(bytes(0x80, 0x01), varInt(128));
+        assertArrayEquals(bytes(0xAC, 0x02), varInt(300));
+        assertArrayEquals(bytes(0xFF, 0xFF, 0x7F), varInt(2097151));
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x07), varInt(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void encodesNegativeVarIntAsUnsigned() {
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), varInt(-1));
+        assertArrayEquals(bytes(0x80, 0x80, 0x80, 0x80, 0x08), varInt(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void encodesZigZag() {
+        assertArrayEquals(bytes(0x00), zigZag(0));
+        assertArrayEquals(bytes(0x01), zigZag(-1));
+        assertArrayEquals(bytes(0x02), zigZag(1));
+        assertArrayEquals(bytes(0x03), zigZag(-2));
+        assertArrayEquals(bytes(0x7F), zigZag(-64));
+        assertArrayEquals(bytes(0x80, 0x01), zigZag(64));
+    }
+
+    @Test
+    public void encodesZigZagExtremes() {
+        assertArrayEquals(bytes(0xFE, 0xFF, 0xFF, 0xFF, 0x0F), zigZag(Integer.MAX_VALUE));
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), zigZag(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void writesLongsBigEndian() {
+        assertArrayEquals(bytes(0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08),
+                body(new McscpBinaryWriter(McscpBinaryWriter.TEXT).writeLong(0x0102030405060708L)));
+    }
+
+    @Test
+    public void writesMultiByteLengthHeader() {
+        //The frame type and 199 bytes make a body of 200 bytes
+        McscpBinaryWriter writer = new McscpBinaryWriter(McscpBinaryWriter.TEXT).writeBytes(new byte[199]);
+        byte[] frame = frame(writer);
+
+        assertEquals(202, frame.length);
+        assertArrayEquals(bytes(0xC8, 0x01, McscpBinaryWriter.TEXT), Arrays.copyOf(frame, 3));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        McscpBinaryWriter writer = new McscpBinaryWriter(McscpBinaryWriter.TEXT);
+        for (int i = 0; i < 100; i++)
+            writer.writeVarInt(300);
+
+        byte[] frame = frame(writer);
+        assertArrayEquals(bytes(0xC9, 0x01, McscpBinaryWriter.TEXT), Arrays.copyOf(frame, 3));
+        for (int i = 3; i < frame.length; i += 2)
+            assertArrayEquals(bytes(0xAC, 0x02), Arrays.copyOfRange(frame, i, i + 2));
+    }
+}
@@ -0,0 +1,144 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests splitting the client byte stream into lines
+ */
+public class McscpLineReaderTest {
+
+    /**
+     * A channel that returns the bytes it was given, then reports that it
+     * would block
+     */
+    private static class FakeChannel implements ReadableByteChannel {
+        private ByteBuffer mPending = ByteBuffer.allocate(0);
+        private boolean mEnded = false;
+
+        void offer(byte[] bytes) {
+            ByteBuffer pending = ByteBuffer.allocate(mPending.remaining() + bytes.length);
+            pending.put(mPending).put(bytes).flip();
+            mPending = pending;
+        }
+
+        void end() {
+            mEnded = true;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!mPending.hasRemaining())
+                return mEnded ? -1 : 0;
+
+            int count = Math.min(dst.remaining(), mPending.remaining());
+            for (int i = 0; i < count; i++)
+                dst.put(mPending.get());
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private FakeChannel mChannel = new FakeChannel();
+    private List<String> mLines = new ArrayList<>();
+
+    private boolean read(McscpLineReader reader, byte[] bytes) throws IOException {
+        mChannel.offer(bytes);
+        return reader.read(mChannel, mLines);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void splitsLinesAndTrimsLineEndings() throws IOException {
+        McscpLineReader reader = new McscpLineReader(64);
+
+        assertTrue(read(reader, utf8("[PING]\r\n\r\n[STATS]\n[PI")));
+        assertEquals(Arrays.asList("[PING]", "[STATS]"), mLines);
+
+        read(reader, utf8("NG]\r\n"));
+        assertEquals(Arrays.asList("[PING]", "[STATS]", "[PING]"), mLines);
+    }
+
+    @Test
+    public void joinsUtf8SequenceSplitAcrossReads() throws IOException {
+        McscpLineReader reader = new McscpLineReader(64);
+        byte[] line = utf8("[BROADCAST]:[CONTENT:h\u00e9llo \u20ac \ud83d\ude00]\n");
+
+        //Split inside every multi-byte character in turn
+        for (int split = 1; split < line.length; split++) {
+            mLines.clear();
+            read(reader, Arrays.copyOfRange(line, 0, split));
+            read(reader, Arrays.copyOfRange(line, split, line.length));
+
+            assertEquals("split at " + split,
+                    Collections.singletonList("[BROADCAST]:[CONTENT:h\u00e9llo \u20ac \ud83d\ude00]"), mLines);
+        }
+    }
+
+    @Test
+    public void readsLinesLongerThanTheBuffer() throws IOException {
+        McscpLineReader reader = new McscpLineReader(20000);
+        char[] content = new char[10000];
+        Arrays.fill(content, '\u00e9');
+        String line = "[CMD]:[CONTENT:" + new String(content) + "]";
+
+        read(reader, utf8(line + "\n"));
+        assertEquals(Collections.singletonList(line), mLines);
+    }
+
+    @Test
+    public void keepsLineOfMaximumLength() throws IOException {
+        McscpLineReader reader = new McscpLineReader(8);
+
+        read(reader, utf8("12345678\n"));
+        assertEquals(Collections.singletonList("12345678"), mLines);
+        assertEquals(0, reader.takeDiscardedLines());
+    }
+
+    @Test
+    public void discardsOverLongLineUpToNextNewline() throws IOException {
+        McscpLineReader reader = new McscpLineReader(8);
+
+        read(reader, utf8("[PING]\n123456789"));
+        read(reader, utf8("more of the same line"));
+        read(reader, utf8(" end\n[STATS]\n"));
+
+        assertEquals(Arrays.asList("[PING]", "[STATS]"), mLines);
+        assertEquals(1, reader.takeDiscardedLines());
+        assertEquals(0, reader.takeDiscardedLines());
+    }
+
+    @Test
+    public void reportsEndOfStream() throws IOException {
+        McscpLineReader reader = new McscpLineReader(64);
+
+        mChannel.end();
+        assertFalse(read(reader, utf8("[PING]\n")));
+        assertEquals(Collections.singletonList("[PING]"), mLines);
+    }
+}
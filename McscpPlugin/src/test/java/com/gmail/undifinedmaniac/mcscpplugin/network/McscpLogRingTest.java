@@ -0,0 +1,116 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the bounded log ring
+ */
+public class McscpLogRingTest {
+
+    private List<String> mMessages = new ArrayList<>();
+    private McscpLogRing.Handler mHandler = (time, level, message) -> mMessages.add(time + " " + level + " " + message);
+
+    @Test
+    public void drainsEventsInOrder() {
+        McscpLogRing ring = new McscpLogRing(4);
+
+        assertTrue(ring.add(1, "INFO", "a"));
+        assertTrue(ring.add(2, "WARN", "b"));
+
+        assertEquals(2, ring.drain(mHandler));
+        assertEquals(Arrays.asList("1 INFO a", "2 WARN b"), mMessages);
+        assertEquals(0, ring.drain(mHandler));
+    }
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        McscpLogRing ring = new McscpLogRing(5);
+
+        for (int i = 0; i < 8; i++)
+            assertTrue(ring.add(i, "INFO", "line " + i));
+        assertFalse(ring.add(8, "INFO", "line 8"));
+    }
+
+    @Test
+    public void dropsEventsWhenFull() {
+        McscpLogRing ring = new McscpLogRing(4);
+
+        for (int i = 0; i < 4; i++)
+            assertTrue(ring.add(i, "INFO", "line " + i));
+        assertFalse(ring.add(4, "INFO", "line 4"));
+        assertFalse(ring.add(5, "INFO", "line 5"));
+
+        assertEquals(2, ring.takeDropped());
+        assertEquals(0, ring.takeDropped());
+
+        //The events that fit are kept, the dropped ones never show up
+        assertEquals(4, ring.drain(mHandler));
+        assertEquals(Arrays.asList("0 INFO line 0", "1 INFO line 1", "2 INFO line 2", "3 INFO line 3"), mMessages);
+
+        assertTrue(ring.add(6, "INFO", "line 6"));
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() {
+        McscpLogRing ring = new McscpLogRing(4);
+        List<String> expected = new ArrayList<>();
+
+        //Three events per drain keeps the head and tail moving around the ring
+        for (int i = 0; i < 99; i++) {
+            assertTrue(ring.add(i, "INFO", "line " + i));
+            expected.add(i + " INFO line " + i);
+
+            if (i % 3 == 2)
+                assertEquals(3, ring.drain(mHandler));
+        }
+
+        assertEquals(expected, mMessages);
+        assertEquals(0, ring.takeDropped());
+    }
+
+    @Test
+    public void keepsOrderOfEachProducer() throws InterruptedException {
+        McscpLogRing ring = new McscpLogRing(64);
+        int producers = 4;
+        int events = 20000;
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            String level = "P" + p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < events; i++)
+                    ring.add(i, level, "");
+            });
+            threads[p].start();
+        }
+
+        long[] last = new long[producers];
+        Arrays.fill(last, -1);
+        long[] taken = new long[1];
+        McscpLogRing.Handler handler = (time, level, message) -> {
+            int producer = level.charAt(1) - '0';
+            assertTrue(time > last[producer]);
+            last[producer] = time;
+            taken[0]++;
+        };
+
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads)
+                running |= thread.isAlive();
+            ring.drain(handler);
+        }
+        ring.drain(handler);
+
+        assertEquals((long) producers * events, taken[0] + ring.takeDropped());
+    }
+}
@@ -0,0 +1,221 @@
+package com.gmail.undifinedmaniac.mcscpplugin.network;
+
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpServerTable;
+import com.gmail.undifinedmaniac.mcscpplugin.table.McscpTableValue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the byte cap of the outgoing queue and the slow client policies
+ */
+public class McscpOutgoingQueueTest {
+
+    //"[PONG]\r\n" is 8 bytes, "[LOG]:[DATA:line n]\r\n" is 21 bytes
+    private static final McscpMessage PONG = new McscpMessage("[PONG]");
+
+    private static McscpOutgoingQueue queue(long maxBytes, McscpOutgoingQueue.Policy... policies) {
+        EnumSet<McscpOutgoingQueue.Policy> set = EnumSet.noneOf(McscpOutgoingQueue.Policy.class);
+        set.addAll(Arrays.asList(policies));
+        return new McscpOutgoingQueue(maxBytes, set, 1000);
+    }
+
+    private static McscpMessage log(int line) {
+        return McscpMessage.logEvent("line " + line);
+    }
+
+    private static McscpMessage tps(float value) {
+        return McscpMessage.serverTableUpdate(McscpServerTable.Key.Tps, McscpTableValue.ofDecimal(value));
+    }
+
+    /**
+     * Writes out everything in the queue, including reports the queue adds
+     * while it drains
+     * @param queue the queue
+     * @return the text of every message in the order it was written
+     */
+    private static List<String> drain(McscpOutgoingQueue queue) {
+        List<String> texts = new ArrayList<>();
+        ByteBuffer[] batch = new ByteBuffer[16];
+
+        int count;
+        while ((count = queue.fill(batch, batch.length)) > 0) {
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[batch[i].remaining()];
+                batch[i].get(bytes);
+                texts.add(new String(bytes, StandardCharsets.UTF_8).trim());
+            }
+
+            queue.removeWritten();
+        }
+
+        return texts;
+    }
+
+    @Test
+    public void dropsOldestLogsOverCap() {
+        McscpOutgoingQueue queue = queue(50, McscpOutgoingQueue.Policy.DropOldestLog);
+
+        queue.add(PONG);
+        queue.add(log(1));
+        queue.add(log(2));
+        assertFalse(queue.isCapped());
+
+        queue.add(log(3));
+        queue.add(log(4));
+        assertTrue(queue.isCapped());
+        assertEquals(2, queue.droppedLogs());
+        assertEquals(3, queue.size());
+        assertEquals(50, queue.bytes());
+
+        assertEquals(Arrays.asList("[PONG]", "[LOG]:[DATA:line 3]", "[LOG]:[DATA:line 4]", "[LOG]:[DROPPED:2]"),
+                drain(queue));
+        assertFalse(queue.isCapped());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void reportsDroppedLogsOnlyOnceDrained() {
+        McscpOutgoingQueue queue = queue(50, McscpOutgoingQueue.Policy.DropOldestLog);
+
+        queue.add(PONG);
+        for (int i = 1; i <= 4; i++)
+            queue.add(log(i));
+
+        //Writing the reply alone leaves the queue above half the cap
+        ByteBuffer[] batch = new ByteBuffer[1];
+        queue.fill(batch, 1);
+        batch[0].position(batch[0].limit());
+        queue.removeWritten();
+        assertTrue(queue.isCapped());
+
+        assertEquals(Arrays.asList("[LOG]:[DATA:line 3]", "[LOG]:[DATA:line 4]", "[LOG]:[DROPPED:2]"),
+                drain(queue));
+    }
+
+    @Test
+    public void keepsPartiallyWrittenLog() {
+        McscpOutgoingQueue queue = queue(50, McscpOutgoingQueue.Policy.DropOldestLog);
+
+        queue.add(log(1));
+        queue.add(log(2));
+
+        ByteBuffer[] batch = new ByteBuffer[1];
+        queue.fill(batch, 1);
+        batch[0].get();
+
+        queue.add(log(3));
+        assertEquals(1, queue.droppedLogs());
+
+        List<String> texts = drain(queue);
+        assertEquals(Arrays.asList("LOG]:[DATA:line 1]", "[LOG]:[DATA:line 3]", "[LOG]:[DROPPED:1]"), texts);
+    }
+
+    @Test
+    public void keepsLogsWithoutDropPolicy() {
+        McscpOutgoingQueue queue = queue(50);
+
+        for (int i = 1; i <= 4; i++)
+            queue.add(log(i));
+
+        assertTrue(queue.isCapped());
+        assertEquals(0, queue.droppedLogs());
+        assertEquals(4, drain(queue).size());
+    }
+
+    @Test
+    public void coalescesUpdatesOnlyWhileCapped() {
+        McscpOutgoingQueue queue = queue(1000, McscpOutgoingQueue.Policy.CoalesceUpdates);
+
+        queue.add(tps(19));
+        queue.add(tps(20));
+        assertEquals(2, queue.size());
+        assertEquals(0, queue.coalescedUpdates());
+    }
+
+    @Test
+    public void coalescesUpdatesForSameKey() {
+        McscpOutgoingQueue queue = queue(10, McscpOutgoingQueue.Policy.CoalesceUpdates);
+        McscpMessage players = McscpMessage.serverTableUpdate(McscpServerTable.Key.PlayerCount,
+                McscpTableValue.ofInt(3));
+        McscpMessage newest = tps(18);
+
+        queue.add(PONG);
+        queue.add(tps(20));
+        assertTrue(queue.isCapped());
+
+        queue.add(tps(19));
+        queue.add(players);
+        queue.add(newest);
+        assertEquals(2, queue.coalescedUpdates());
+        assertEquals(3, queue.size());
+
+        assertEquals(Arrays.asList("[PONG]", newest.getText(), players.getText()), drain(queue));
+    }
+
+    @Test
+    public void doesNotReplaceStartedUpdate() {
+        McscpOutgoingQueue queue = queue(10, McscpOutgoingQueue.Policy.CoalesceUpdates);
+        McscpMessage first = tps(20);
+        McscpMessage second = tps(19);
+
+        queue.add(first);
+        assertTrue(queue.isCapped());
+
+        ByteBuffer[] batch = new ByteBuffer[1];
+        queue.fill(batch, 1);
+        batch[0].get();
+
+        queue.add(second);
+        assertEquals(0, queue.coalescedUpdates());
+        assertEquals(Arrays.asList(first.getText().substring(1), second.getText()), drain(queue));
+    }
+
+    @Test
+    public void hardLimitIsTwiceTheCap() {
+        McscpOutgoingQueue queue = queue(20, McscpOutgoingQueue.Policy.DropOldestLog,
+                McscpOutgoingQueue.Policy.CoalesceUpdates);
+
+        //Replies cannot be shed, so they pile up no matter the policies
+        for (int i = 0; i < 5; i++)
+            queue.add(PONG);
+        assertTrue(queue.isCapped());
+        assertFalse(queue.isOverHardLimit());
+
+        queue.add(PONG);
+        assertTrue(queue.isOverHardLimit());
+    }
+
+    @Test
+    public void expiresAfterGracePeriodWithDisconnectPolicy() {
+        McscpOutgoingQueue queue = queue(5, McscpOutgoingQueue.Policy.Disconnect);
+        queue.add(PONG);
+
+        assertFalse(queue.isExpired(0));
+        assertFalse(queue.isExpired(1000000000L));
+        assertTrue(queue.isExpired(1000000001L));
+
+        drain(queue);
+        assertFalse(queue.isExpired(2000000000L));
+    }
+
+    @Test
+    public void neverExpiresWithoutDisconnectPolicy() {
+        McscpOutgoingQueue queue = queue(5);
+        queue.add(PONG);
+
+        assertFalse(queue.isExpired(0));
+        assertFalse(queue.isExpired(10000000000L));
+    }
+}